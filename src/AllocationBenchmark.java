@@ -0,0 +1,69 @@
+import game_objs.engine.ShardedEngine;
+import game_objs.engine.Simulation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures how much each engine allocates per generation once it has warmed up:
+ * <p>
+ * java AllocationBenchmark [rows] [columns] [generations]
+ * <p>
+ * runs the same soup on every engine and reads the bytes allocated by all threads, the
+ * workers of the pool included, from the allocation counters of the JVM. The engines that
+ * double-buffer their state must not allocate at all in steady state, as garbage collection
+ * makes the frame time jitter at high speeds; the program exits with status 1 if any of
+ * them does. HashLife memoizes new nodes as the universe evolves, and the sharded engine
+ * goes through sockets, so they are measured but not held to it.
+ */
+public class AllocationBenchmark {
+    private static final String[] ALLOCATION_FREE = {"Classic", "Bit-packed", "Lookup table", "Sparse",
+            "Generations", "Larger than Life", "Elementary", "Off-heap"};
+    //what the counters themselves and the odd class initialisation may account for.
+    private static final long TOLERANCE = 1 << 14;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+        int generations = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        boolean failed = false;
+        for (String engine : Simulation.ENGINES) {
+            Simulation simulation = new Simulation(rows, columns, engine, Simulation.getSharedPool());
+            if (engine.equals("Elementary")) simulation.setAlive(0, columns / 2, true);
+            else simulation.flipRandom(0.35, 1);
+            //the first generations run the JIT and let the engines settle.
+            simulation.step(generations / 10 + 1);
+            for (int i = 0; i < generations / 10 + 1; i++)
+                simulation.step();
+
+            long allocated = allocated(threads);
+            long start = System.nanoTime();
+            for (int i = 0; i < generations; i++)
+                simulation.step();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            allocated = allocated(threads) - allocated;
+
+            boolean required = Arrays.asList(ALLOCATION_FREE).contains(engine);
+            boolean ok = !required || allocated <= TOLERANCE;
+            failed |= !ok;
+            System.out.printf("%-17s %12d bytes, %10.1f bytes/generation, %8.1f generations/s%s%n", engine,
+                    allocated, (double) allocated / generations, generations / seconds,
+                    ok ? "" : "  FAILED: should allocate nothing");
+            if (simulation.getEngine() instanceof ShardedEngine) ((ShardedEngine) simulation.getEngine()).close();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * @return the bytes allocated so far by all live threads
+     */
+    private static long allocated(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+            if (bytes > 0) total += bytes;
+        return total;
+    }
+}
@@ -0,0 +1,52 @@
+import game_objs.engine.Simulation;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts between the formats of saved games:
+ * <p>
+ * java ConvertSaved saved_game saved_game.checkpoint
+ * <p>
+ * writes a "#saved" text file as a binary checkpoint, and a checkpoint as a "#saved" text
+ * file. Outputs ending in ".rle" or ".mc" are written as run length encoded patterns and
+ * macrocells, and those formats are read as well. The universe is held by the given
+ * engine, the bit-packed one by default; the "Off-heap" engine fits universes beyond the
+ * heap, and the "HashLife" engine takes macrocells as they are.
+ */
+public class ConvertSaved {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: ConvertSaved <input> <output> [engine]");
+            System.exit(1);
+        }
+        File input = new File(args[0]), output = new File(args[1]);
+        String engine = args.length > 2 ? args[2] : "Bit-packed";
+        Simulation simulation = new Simulation(1, 1, engine, Simulation.getSharedPool());
+
+        long start = System.nanoTime();
+        boolean checkpoint = Simulation.isCheckpoint(input);
+        simulation.load(input);
+        System.out.printf("loaded %s: %dx%d, population %d, %.3f s%n", input.getName(), simulation.getRows(),
+                simulation.getColumns(), simulation.getPopulation(), (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        String format;
+        if (output.getName().endsWith(".rle")) {
+            simulation.saveRle(output);
+            format = "run length encoded pattern";
+        } else if (output.getName().endsWith(".mc")) {
+            simulation.saveMacrocell(output);
+            format = "macrocell";
+        } else if (checkpoint) {
+            simulation.save(output);
+            format = "text";
+        } else {
+            simulation.saveCheckpoint(output);
+            format = "checkpoint";
+        }
+        System.out.printf("saved %s as %s: %d bytes, %.3f s%n", output.getName(), format,
+                output.length(), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -8,19 +8,20 @@ public class ConvertToStandardConfig {
     public static void main(String args[]) {
         String lines = TextInput.getStringFromClipboard(true);
         int maxRow = 0, maxCol = 0;
-        String incrementer = "", data = "";
+        //appending to Strings would copy everything read so far for every cell.
+        StringBuilder incrementer = new StringBuilder(), data = new StringBuilder();
         for (int i = 0; i < lines.length(); i++) {
             char c = lines.charAt(i);
             if (c != '\n')
-                incrementer += c;
+                incrementer.append(c);
             else {
-                String pos[] = incrementer.split(" ");
+                String pos[] = incrementer.toString().split(" ");
                 int row = Integer.valueOf(pos[0]);
                 int col = Integer.valueOf(pos[1]);
                 maxRow = row > maxRow ? row : maxRow;
                 maxCol = col > maxCol ? col : maxCol;
-                data += row + "," + col + ";";
-                incrementer = "";
+                data.append(row).append(',').append(col).append(';');
+                incrementer.setLength(0);
             }
         }
         //Scanner scanner = new Scanner(System.in);
@@ -0,0 +1,309 @@
+import game_objs.engine.Rule;
+import game_objs.engine.ShardedEngine;
+import game_objs.engine.Simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+
+/**
+ * Checks every engine against the classic one:
+ * <p>
+ * java CrossCheck [generations]
+ * <p>
+ * steps the same random soups on the classic engine and on each of the others, and compares
+ * the universes after every generation. Engines on a torus start from a soup that covers the
+ * whole universe. HashLife and the sparse engine run on an unbounded plane, so theirs is
+ * placed far enough from the edges that nothing reaches them. The elementary engine, which
+ * the classic one can't stand in for, is checked against a plain reference instead, and so
+ * are the multi-state rules of the Generations and Larger than Life engines. Finally,
+ * HashLife jumps a glider gun as far as its plane reaches, and saved games with states
+ * their rule doesn't have must be refused.
+ * Prints the first difference and exits with status 1 if any engine disagrees.
+ */
+public class CrossCheck {
+    private static final int ROWS = 96;
+    private static final int COLUMNS = 130;
+    private static final String[] TORUS = {"Bit-packed", "Lookup table", "Generations", "Larger than Life",
+            "Off-heap", "Sharded"};
+    private static final String[] PLANE = {"HashLife", "Sparse"};
+    private static int failures;
+
+    public static void main(String[] args) {
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        for (long seed = 1; seed <= 3; seed++) {
+            for (String engine : TORUS) {
+                compare(engine, Rule.CONWAY, seed, generations, false);
+                compare(engine, Rule.parse("B36/S23"), seed, generations, false);
+            }
+            for (String engine : PLANE)
+                compare(engine, Rule.CONWAY, seed, Math.min(generations, 32), true);
+            for (String engine : new String[]{"Generations", "Larger than Life"}) {
+                generations(engine, Rule.parse("B2/S/C3"), seed, generations);
+                //states from 128 on are negative as bytes, and must not count as living.
+                generations(engine, Rule.parse("/3/200"), seed, generations);
+            }
+            elementary(Rule.elementary(30), 48, 200, seed, generations, false);
+            elementary(Rule.elementary(110), 48, 64, seed, generations, false);
+            //a single row is both the last generation and the next one.
+            elementary(Rule.elementary(30), 1, 200, seed, generations, false);
+            //rules that cycle at once must keep scrolling rather than be skipped ahead.
+            elementary(Rule.elementary(204), 48, 64, seed, generations, true);
+            elementary(Rule.elementary(51), 48, 64, seed, generations, true);
+        }
+        jumps();
+        states();
+        System.out.println(failures == 0 ? "all engines agree" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * @param centered whether the soup is kept away from the edges of the universe, for the
+     *                 engines on an unbounded plane; 32 generations never reach them
+     */
+    private static void compare(String engine, Rule rule, long seed, int generations, boolean centered) {
+        Simulation expected = new Simulation(ROWS, COLUMNS, "Classic", Simulation.getSharedPool());
+        Simulation actual = new Simulation(ROWS, COLUMNS, engine, Simulation.getSharedPool());
+        expected.setRule(rule);
+        actual.setRule(rule);
+        if (centered) {
+            soup(expected, 32, 32, 32, 66, seed);
+            soup(actual, 32, 32, 32, 66, seed);
+        } else {
+            expected.flipRandom(0.35, seed);
+            actual.flipRandom(0.35, seed);
+        }
+        String name = engine + " " + rule + " seed " + seed;
+        try {
+            for (int g = 0; g <= generations; g++) {
+                if (g > 0) {
+                    expected.step();
+                    actual.step();
+                }
+                if (!same(expected, actual, name, g)) return;
+            }
+            if (expected.getPopulation() != actual.getPopulation()) {
+                fail(name, "population " + actual.getPopulation() + ", expected " + expected.getPopulation());
+                return;
+            }
+            System.out.println("ok: " + name);
+        } finally {
+            if (actual.getEngine() instanceof ShardedEngine) ((ShardedEngine) actual.getEngine()).close();
+        }
+    }
+
+    /**
+     * steps a Generations rule from a soup of all its states and compares every generation
+     * with a reference that applies the rule to one cell at a time.
+     */
+    private static void generations(String engine, Rule rule, long seed, int generations) {
+        Simulation simulation = new Simulation(ROWS, COLUMNS, engine, Simulation.getSharedPool());
+        simulation.setRule(rule);
+        int states = rule.getStates();
+        int[][] expected = new int[ROWS][COLUMNS];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int r = 0; r < ROWS; r++)
+            for (int c = 0; c < COLUMNS; c++) {
+                expected[r][c] = random.nextInt(states);
+                simulation.setState(r, c, expected[r][c]);
+            }
+        String name = engine + " " + rule + " seed " + seed;
+        for (int g = 1; g <= generations; g++) {
+            int[][] next = new int[ROWS][COLUMNS];
+            for (int r = 0; r < ROWS; r++)
+                for (int c = 0; c < COLUMNS; c++) {
+                    int count = 0;
+                    for (int i = -1; i <= 1; i++)
+                        for (int j = -1; j <= 1; j++)
+                            if ((i != 0 || j != 0) && expected[(r + i + ROWS) % ROWS][(c + j + COLUMNS) % COLUMNS] == 1)
+                                count++;
+                    int state = expected[r][c];
+                    if (state == 0) next[r][c] = rule.next(false, count) ? 1 : 0;
+                    else if (state == 1) next[r][c] = rule.next(true, count) ? 1 : states > 2 ? 2 : 0;
+                    else next[r][c] = state + 1 == states ? 0 : state + 1;
+                }
+            expected = next;
+            simulation.step();
+            for (int r = 0; r < ROWS; r++)
+                for (int c = 0; c < COLUMNS; c++)
+                    if (simulation.getState(r, c) != expected[r][c]) {
+                        fail(name, "generation " + g + " differs at " + r + "," + c);
+                        return;
+                    }
+        }
+        System.out.println("ok: " + name);
+    }
+
+    /**
+     * jumps a Gosper glider gun by 2^60 generations, the most HashLife takes at once, and
+     * compares the window with the same phase of the gun a few thousand generations in,
+     * by which time the stream of gliders has long filled the window. Further jumps must
+     * be refused once the gliders are about to leave the plane, rather than empty it.
+     */
+    private static void jumps() {
+        String name = "HashLife jumps";
+        Simulation far = gun();
+        Simulation near = gun();
+        long generations = 1L << 60;
+        far.step(generations);
+        near.step(30 * 200 + generations % 30);
+        if (!same(near, far, name, 60)) return;
+        try {
+            far.step(1L << 61);
+            fail(name, "a jump by 2^61 generations wasn't refused");
+            return;
+        } catch (IllegalArgumentException e) {
+            //the jump is too far for the plane.
+        }
+        try {
+            File file = File.createTempFile("jumps", ".mc");
+            file.deleteOnExit();
+            far.saveMacrocell(file);
+            for (int i = 0; i < 64; i++)
+                far.step(generations);
+            fail(name, "the gliders never reached the end of the plane");
+            return;
+        } catch (IOException e) {
+            fail(name, "can't save the gun: " + e.getMessage());
+            return;
+        } catch (IllegalStateException e) {
+            //the gliders have come as far as they may.
+        }
+        near.step(Math.floorMod(far.getGeneration() - near.getGeneration(), 30) + 30);
+        if (!same(near, far, name, 61)) return;
+        System.out.println("ok: " + name);
+    }
+
+    /**
+     * loads a saved game and a checkpoint whose dying cells lie beyond the last state of
+     * their rule, which the Generations engine would look up past the end of its table.
+     */
+    private static void states() {
+        String name = "states out of range";
+        try {
+            File saved = File.createTempFile("states", ".txt");
+            saved.deleteOnExit();
+            Files.write(saved.toPath(), ("#saved\n~ dim:8,8\n~ rule:/3/3\n~ pos:1,1;\n~ states:2,2,5;\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            if (loads(saved)) {
+                fail(name, "a saved game with state 5 under /3/3 was loaded");
+                return;
+            }
+            //a checkpoint of a cell in state 150, whose rule then loses its last 100 states.
+            Simulation simulation = new Simulation(8, 8, "Generations", Simulation.getSharedPool());
+            simulation.setRule(Rule.parse("/3/200"));
+            simulation.setState(2, 2, 150);
+            File checkpoint = File.createTempFile("states", ".bin");
+            checkpoint.deleteOnExit();
+            simulation.saveCheckpoint(checkpoint);
+            String bytes = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.ISO_8859_1);
+            Files.write(checkpoint.toPath(), bytes.replace("C200", "C100").getBytes(StandardCharsets.ISO_8859_1));
+            if (loads(checkpoint)) {
+                fail(name, "a checkpoint with state 150 under /3/100 was loaded");
+                return;
+            }
+        } catch (IOException e) {
+            fail(name, e.getMessage());
+            return;
+        }
+        System.out.println("ok: " + name);
+    }
+
+    private static boolean loads(File file) {
+        Simulation simulation = new Simulation(8, 8, "Generations", Simulation.getSharedPool());
+        try {
+            simulation.load(file);
+            simulation.step();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Simulation gun() {
+        String[] rows = {
+                "........................O...........",
+                "......................O.O...........",
+                "............OO......OO............OO",
+                "...........O...O....OO............OO",
+                "OO........O.....O...OO..............",
+                "OO........O...O.OO....O.O...........",
+                "..........O.....O.......O...........",
+                "...........O...O....................",
+                "............OO......................"};
+        Simulation simulation = new Simulation(ROWS, COLUMNS, "HashLife", Simulation.getSharedPool());
+        for (int r = 0; r < rows.length; r++)
+            for (int c = 0; c < rows[r].length(); c++)
+                if (rows[r].charAt(c) == 'O') simulation.setAlive(r + 4, c + 4, true);
+        return simulation;
+    }
+
+    private static void soup(Simulation simulation, int top, int left, int rows, int columns, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int r = top; r < top + rows; r++)
+            for (int c = left; c < left + columns; c++)
+                if (random.nextDouble() < 0.35) simulation.setAlive(r, c, true);
+    }
+
+    /**
+     * steps an elementary rule and compares the spacetime diagram shown by the engine with
+     * a reference that computes every cell from its three parents.
+     *
+     * @param cycles whether to step two generations at a time with cycle detection on
+     */
+    private static void elementary(Rule rule, int rows, int columns, long seed, int generations, boolean cycles) {
+        Simulation simulation = new Simulation(rows, columns, "Elementary", Simulation.getSharedPool());
+        simulation.setRule(rule);
+        simulation.setCycleDetection(cycles);
+        boolean[][] history = new boolean[generations + 1][columns];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int c = 0; c < columns; c++)
+            if (random.nextBoolean()) {
+                history[0][c] = true;
+                simulation.setAlive(0, c, true);
+            }
+        int code = rule.getWolframCode();
+        for (int g = 1; g <= generations; g++)
+            for (int c = 0; c < columns; c++) {
+                boolean[] above = history[g - 1];
+                int k = (above[(c + columns - 1) % columns] ? 4 : 0) | (above[c] ? 2 : 0)
+                        | (above[(c + 1) % columns] ? 1 : 0);
+                history[g][c] = (code >>> k & 1) != 0;
+            }
+        if (!cycles) simulation.step(generations);
+        else for (int g = 0; g < generations; g += 2)
+            simulation.step(Math.min(2, generations - g));
+        String name = "Elementary " + rule + " " + rows + "x" + columns + " seed " + seed
+                + (cycles ? " with cycle detection" : "");
+        if (simulation.getGeneration() != generations || simulation.getEngine().getGeneration() != generations) {
+            fail(name, "generation " + simulation.getEngine().getGeneration() + ", expected " + generations);
+            return;
+        }
+        //the last generation is the bottom row once the diagram has filled the grid.
+        int first = Math.max(0, generations - rows + 1);
+        for (int g = first; g <= generations; g++)
+            for (int c = 0; c < columns; c++)
+                if (simulation.isAlive(g - first, c) != history[g][c]) {
+                    fail(name, "generation " + g + " differs at column " + c);
+                    return;
+                }
+        System.out.println("ok: " + name);
+    }
+
+    private static boolean same(Simulation expected, Simulation actual, String name, int generation) {
+        for (int r = 0; r < ROWS; r++)
+            for (int c = 0; c < COLUMNS; c++)
+                if (expected.getState(r, c) != actual.getState(r, c)) {
+                    fail(name, "generation " + generation + " differs at " + r + "," + c);
+                    return false;
+                }
+        return true;
+    }
+
+    private static void fail(String name, String message) {
+        System.out.println("FAILED: " + name + ": " + message);
+        failures++;
+    }
+}
@@ -1,6 +1,7 @@
 
 import game_objs.Cell;
 import game_objs.Context;
+import game_objs.engine.Boundary;
 import jui.*;
 import jui.bundles.AbstractValueSelector;
 import jui.bundles.CompositeValueSelector;
@@ -8,6 +9,7 @@ import processing.core.PApplet;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Main extends PApplet {
     private static int rows = 60;
@@ -122,15 +124,14 @@ public class Main extends PApplet {
             updateFilteredButtons(configButtons, filtered);
         });
 
-        File[] listOfFiles = Context.listOfFiles("configs");
-        for (int i = 0; i < listOfFiles.length; i++) {
-            File file = listOfFiles[i];
-            Context.importConfig(file);
+        ArrayList<String> configNames = Context.indexConfigs();
+        for (int i = 0; i < configNames.size(); i++) {
+            String name = configNames.get(i);
             upUiPanel.add(new CustomButton(0.1f, 1)
                     .setIsShowing(i < 5)
-                    .setContent(file.getName())
+                    .setContent(name)
                     .onClick(() -> {
-                        getContext().setCurrentConfig(file.getName());
+                        getContext().setCurrentConfig(name);
                         Switch flip = ((Switch) JNode.get("@INSERT").get(0));
                         flip.setState(true).activate();
                     }).setVisible(true)
@@ -155,7 +156,7 @@ public class Main extends PApplet {
             getContext().save(name, "configs");
             for (File file : Context.listOfFiles("configs"))
                 if (file.getName().equals(name)) {
-                    Context.importConfig(file);
+                    Context.indexConfig(file);
                     break;
                 }
 
@@ -236,6 +237,10 @@ public class Main extends PApplet {
 
         TextInput fileName = new TextInput(1.0f, 0.05f).setDefaultContent("saved_game_" + (maxSavedNum + 1));
         leftUiPanel.add(fileName.setId("@FILE_NAME"));
+        leftUiPanel.add(new Switch(1.0f, 0.05f).setContentOff("Text")
+                .setContentOn("Checkpoint")
+                .onClick(getContext()::toggleSavingCheckpoints)
+                .setState(false));
 
         Button save = new Button(1.0f, 0.05f).setContent("Save").onClick(() -> {
             getContext().save(fileName.getContent(), "saved");
@@ -275,6 +280,19 @@ public class Main extends PApplet {
                 .onClick(getContext()::iterate);
         uiPanel.add(step);
 
+        TextInput jump = new TextInput(1.0f, 0.05f).setDefaultContent("1000");
+        jump.onSubmit(() -> {
+            try {
+                long generations = Long.parseLong(jump.getContent().trim());
+                if (generations > 0) getContext().jump(generations);
+                else System.out.println("can't jump by " + generations + " generations");
+            } catch (NumberFormatException e) {
+                System.out.println("not a number of generations: " + jump.getContent());
+            }
+        });
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("Jump").inheritOutlook(modelLabel));
+        uiPanel.add(jump);
+
         uiPanel.add(new SpaceHolder());
 
         Switch flowControl = (Switch) new Switch()
@@ -282,7 +300,19 @@ public class Main extends PApplet {
                 .setState(false)
                 .onClick(getContext()::toggleAutoIteration)
                 .inheritDisplayProperties(step);
-        uiPanel.add(flowControl);
+        uiPanel.add(flowControl.setId("@ITERATION"));
+
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("Cycles").inheritOutlook(modelLabel));
+        uiPanel.add(new Switch(1.0f, 0.05f).setContentOff("Ignore")
+                .setContentOn("Detect")
+                .onClick(getContext()::toggleCycleDetection)
+                .setState(false));
+
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("On Cycle").inheritOutlook(modelLabel));
+        uiPanel.add(new Switch(1.0f, 0.05f).setContentOff("Skip")
+                .setContentOn("Stop")
+                .onClick(getContext()::toggleStoppingOnCycle)
+                .setState(false));
 
         uiPanel.add(new SpaceHolder());
 
@@ -295,6 +325,17 @@ public class Main extends PApplet {
         speed.link(() -> getContext().setMillisPerIteration(speed.getIntValue())).getTitleLabel().inheritOutlook(modelLabel);
         uiPanel.add(speed);
 
+        AbstractValueSelector turbo = new CompositeValueSelector(1.0f, 0.1f)
+                .setTitlePercentage(0.3f)
+                .roundTo(-1)
+                .setTitle("gen/i")
+                .setRange(1, 1000)
+                .setValue(1);
+        turbo.link(() -> getContext().setGenerationsPerIteration(Math.max(1, turbo.getIntValue()))).getTitleLabel().inheritOutlook(modelLabel);
+        uiPanel.add(turbo);
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("gen 0").inheritOutlook(modelLabel).setId("@GENERATION"));
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("pop 0").inheritOutlook(modelLabel).setId("@STATISTICS"));
+
         AbstractValueSelector frameRate = new CompositeValueSelector(1.0f, 0.1f)
                 .setTitlePercentage(0.3f)
                 .roundTo(-1)
@@ -316,6 +357,33 @@ public class Main extends PApplet {
                 .onClick(() -> gameContext.setCellGridVisible(!gameContext.isCellGridVisible()))
                 .setState(false));
 
+        uiPanel.add(new SpaceHolder());
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("Engine").inheritOutlook(modelLabel));
+        Button engine = new Button(1.0f, 0.05f).setContent(Context.ENGINES[0]);
+        engine.onClick(() -> {
+            int index = (Arrays.asList(Context.ENGINES).indexOf(engine.getContent()) + 1) % Context.ENGINES.length;
+            gameContext.setEngine(Context.ENGINES[index]);
+        });
+        uiPanel.add(engine.setId("@ENGINE"));
+
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("Rule").inheritOutlook(modelLabel));
+        TextInput rule = new TextInput(1.0f, 0.05f).setDefaultContent(gameContext.getRule().toString());
+        rule.onSubmit(() -> gameContext.setRule(rule.getContent()));
+        uiPanel.add(rule.setId("@RULE"));
+
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("Neighbourhood").inheritOutlook(modelLabel));
+        TextInput neighbourhood = new TextInput(1.0f, 0.05f).setDefaultContent(gameContext.getNeighbourhood().toString());
+        neighbourhood.onSubmit(() -> gameContext.setNeighbourhood(neighbourhood.getContent()));
+        uiPanel.add(neighbourhood.setId("@NEIGHBOURHOOD"));
+
+        uiPanel.add(new Label(1.0f, 0.05f).setContent("Boundary").inheritOutlook(modelLabel));
+        Button boundary = new Button(1.0f, 0.05f).setContent(gameContext.getBoundary().toString());
+        boundary.onClick(() -> {
+            Boundary[] boundaries = Boundary.values();
+            gameContext.setBoundary(boundaries[(gameContext.getBoundary().ordinal() + 1) % boundaries.length]);
+        });
+        uiPanel.add(boundary.setId("@BOUNDARY"));
+
         uiPanel.add(new SpaceHolder());
 
         AbstractValueSelector rows = new CompositeValueSelector(1.0f, 0.1f)
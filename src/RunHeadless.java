@@ -0,0 +1,48 @@
+import game_objs.engine.Simulation;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs a saved game without a window, for instance on a server:
+ * <p>
+ * java RunHeadless saved_game 100000 "Bit-packed"
+ * <p>
+ * loads the saved game, advances it by the given number of generations on the given
+ * engine (the classic engine by default) and prints the throughput and the population.
+ * Universes of billions of cells fit the "Off-heap" engine.
+ * The third argument may be any of Simulation.ENGINES. An output file may follow, to
+ * which the final generation is saved.
+ */
+public class RunHeadless {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: RunHeadless <saved game> <generations> [engine] [output]");
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        long generations = Long.parseLong(args[1]);
+
+        //the engine is chosen before loading, so that large universes are allocated by it alone.
+        String engine = args.length > 2 ? args[2] : Simulation.ENGINES[0];
+        Simulation simulation = new Simulation(1, 1, engine, Simulation.getSharedPool());
+        simulation.load(file);
+        System.out.println("loaded " + file.getName() + ": " + simulation.getRows() + "x" + simulation.getColumns()
+                + ", population " + simulation.getPopulation());
+
+        long start = System.nanoTime();
+        simulation.step(generations);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double cells = (double) simulation.getRows() * simulation.getColumns() * generations;
+        System.out.printf("%d generations in %.3f s: %.1f generations/s, %.1f million cells/s%n",
+                generations, seconds, generations / seconds, cells / seconds / 1e6);
+        System.out.println("generation " + simulation.getGeneration() + ", population " + simulation.getPopulation());
+
+        if (args.length > 3) {
+            simulation.save(new File(args[3]));
+            System.out.println("saved: " + args[3]);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.util.ArrayList;
  */
 public class Cell extends Displayable {
     private boolean alive;
+    private int state;
     private boolean prevState;
     private static boolean highlightingMotion;
     static Context context;
@@ -82,17 +83,41 @@ public class Cell extends Displayable {
     }
 
     Cell setAlive(boolean alive) {
+        state = alive ? 1 : 0;
         if (this.alive != alive) {
             if (highlightingMotion)
                 setBackgroundColor(255, 0, 0);
             else setBackgroundColor(255, 0, 0, 200);
             this.alive = alive;
+            context.cellUpdated(row, col, alive);
         }
-        if (alive) context.setActive(row, col);
         setBackgroundVisible(highlightingMotion || alive);
         return this;
     }
 
+    /**
+     * @return the state of the cell under a Generations rule; 0 for dead, 1 for alive
+     * and 2 or more for dying cells
+     */
+    int getState() {
+        return state;
+    }
+
+    /**
+     * dying cells are drawn in blue that fades out as they approach the dead state.
+     *
+     * @param state  the state of the cell under a Generations rule
+     * @param states the number of states of the rule
+     */
+    Cell setState(int state, int states) {
+        if (state < 2) return setAlive(state == 1);
+        setAlive(false);
+        this.state = state;
+        setBackgroundColor(0, 100, 255, 200 * (states - state) / (states - 1));
+        setBackgroundVisible(true);
+        return this;
+    }
+
     @Override
     public void resize(float w, float h) {
         super.resize(w, h);
@@ -1,6 +1,15 @@
 package game_objs;
 
 import com.sun.istack.internal.Nullable;
+import game_objs.engine.Boundary;
+import game_objs.engine.Macrocell;
+import game_objs.engine.Neighbourhood;
+import game_objs.engine.PatternReader;
+import game_objs.engine.Rle;
+import game_objs.engine.Rule;
+import game_objs.engine.Simulation;
+import game_objs.engine.SimulationThread;
+import game_objs.engine.Snapshot;
 import jui.*;
 import processing.core.PApplet;
 import processing.core.PConstants;
@@ -8,8 +17,17 @@ import processing.core.PConstants;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 /**
  * Created by Jiachen on 6/8/17.
@@ -19,8 +37,8 @@ import java.util.ArrayList;
  * when integrated with JUI.
  */
 public class Context extends Displayable implements KeyControl {
+    public static final String[] ENGINES = Simulation.ENGINES;
     private static boolean runningAsApplication;
-    private static int availableProcessors;
     Displayable dummyCell;
     int[] startingPos;
     int[] endingPos;
@@ -29,19 +47,21 @@ public class Context extends Displayable implements KeyControl {
     private Cell[][] cellMatrix;
     private int rows;
     private int columns;
-    private int millisPerIteration;
-    private long lastIteratedMillis;
     private float gridRootX[];
     private float gridRootY[];
     private boolean cellGridVisible;
-    private ArrayList<Cell> activeCells;
     private boolean insertingConfig;
     private Config currentConfig;
-    private boolean[][] resultMatrix;
+    private SimulationThread simulationThread;
+    private Snapshot rendered;
+    private boolean syncingCells;
+    private boolean controlsOutdated;
+    private boolean cycleDetection;
+    //whether games are saved as binary checkpoints rather than in the #saved text format.
+    private boolean savingCheckpoints;
 
     {
         Cell.context = this;
-        availableProcessors = Runtime.getRuntime().availableProcessors();
     }
 
     /**
@@ -55,29 +75,59 @@ public class Context extends Displayable implements KeyControl {
         this.setId(id);
         this.rows = rows;
         this.columns = columns;
-        millisPerIteration = 10; //defaults to one iteration per 100 milliseconds.
         cellGridVisible = false;
         setBackgroundVisible(false);
         setContourThickness(0.2f);
         initializeCellMatrix();
+        Simulation simulation = new Simulation(rows, columns);
+        simulationThread = new SimulationThread(simulation);
+        simulationThread.setMillisPerStep(10); //defaults to one iteration per 10 milliseconds.
+        simulationThread.start();
         initEventListeners();
         initDummyCell();
         selected = new ArrayList<>();
     }
 
+    /**
+     * indexes the configurations in the "configs" folder without reading their cells; those
+     * are read when a configuration is first used; see Config.extract(). The index is kept
+     * in the folder, and only the files that have changed since it was written are read.
+     *
+     * @return the names of the configurations
+     */
+    public static ArrayList<String> indexConfigs() {
+        File indexFile = new File(folderOf("configs"), Config.INDEX);
+        Config.readIndex(indexFile);
+        ArrayList<String> names = new ArrayList<>();
+        boolean changed = false;
+        for (File file : listOfFiles("configs")) {
+            if (!file.isFile() || file.getName().startsWith(".")) continue;
+            names.add(file.getName());
+            changed |= Config.index(file);
+        }
+        changed |= Config.index.keySet().retainAll(names);
+        if (changed) Config.writeIndex(indexFile);
+        System.out.println("indexed configs: " + names.size());
+        return names;
+    }
+
+    /**
+     * adds a configuration that has just been saved to the index, replacing the one of the
+     * same name.
+     */
+    public static void indexConfig(File file) {
+        Config.cache.remove(file.getName());
+        Config.index.remove(file.getName());
+        if (Config.index(file)) Config.writeIndex(new File(file.getParentFile(), Config.INDEX));
+    }
+
+    /**
+     * reads the cells of a configuration and puts it into the cache of configurations.
+     */
     public static void importConfig(File file) {
+        if (importPositions(file) || importStandard(file)) return;
         String lines[] = PApplet.loadStrings(file);
-        if (lines[0].equals("#configs")) {
-            String dim[] = lines[1].substring(lines[1].indexOf(":") + 1).split(",");
-            Config config = new Config(file.getName(), parseInt(dim[0]), parseInt(dim[1]));
-            String[] activeCellCoordinates = lines[2].substring(lines[2].indexOf(":") + 1).split(";");
-            for (String coordinate : activeCellCoordinates) {
-                String[] pos = coordinate.split(",");
-                if (pos[0].equals("") || pos[1].equals("")) break;
-                config.add(parseInt(pos[0]), parseInt(pos[1]));
-            }
-            Config.register(config);
-        } else if (lines[0].equals("#configs-p") && lines.length > 1) {
+        if (lines[0].equals("#configs-p") && lines.length > 1) {
             int cols = lines[1].length(), rows = lines.length - 1;
             Config config = new Config(file.getName(), rows, cols);
             for (int i = 1; i < lines.length; i++) {
@@ -125,6 +175,85 @@ public class Context extends Displayable implements KeyControl {
 
     }
 
+    /**
+     * imports a configuration in the "#configs" format, whose list of cells is streamed
+     * into the configuration rather than split into strings; see PatternReader.
+     *
+     * @return false if the file is in another format, true if it has been imported or
+     * couldn't be read
+     */
+    private static boolean importPositions(File file) {
+        Config[] config = new Config[1];
+        try {
+            boolean positions = PatternReader.read(file, "#configs", new PatternReader.Handler() {
+                @Override
+                public void field(String key, String value) {
+                    if (!key.equals("dim")) return;
+                    String dim[] = value.split(",");
+                    config[0] = new Config(file.getName(), parseInt(dim[0]), parseInt(dim[1]));
+                }
+
+                @Override
+                public void cells(int[] coordinates, int length) throws IOException {
+                    if (config[0] == null)
+                        throw new IOException("missing dimension: " + file.getName());
+                    for (int i = 0; i < length; i += 2)
+                        config[0].add(coordinates[i], coordinates[i + 1]);
+                }
+            });
+            if (positions && config[0] != null) {
+                Config.register(config[0]);
+                System.out.println("loaded config: " + file.getName());
+            }
+            return positions;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * imports a configuration in one of the standard formats, a run length encoded pattern
+     * or a macrocell; see Rle and Macrocell.
+     *
+     * @return false if the file is in neither format, true if it has been imported or
+     * couldn't be read
+     */
+    private static boolean importStandard(File file) {
+        Config[] config = new Config[1];
+        PatternReader.Handler handler = new PatternReader.Handler() {
+            @Override
+            public void field(String key, String value) {
+                if (!key.equals("dim")) return;
+                String dim[] = value.split(",");
+                config[0] = new Config(file.getName(), parseInt(dim[0]), parseInt(dim[1]));
+            }
+
+            @Override
+            public void cells(int[] coordinates, int length) {
+                for (int i = 0; i < length; i += 2)
+                    config[0].add(coordinates[i], coordinates[i + 1]);
+            }
+        };
+        try {
+            if (Macrocell.isMacrocell(file)) {
+                Macrocell macrocell = Macrocell.read(file);
+                long[] bounds = macrocell.getBounds();
+                if (bounds == null) return true;
+                long rows = bounds[2] - bounds[0] + 1, cols = bounds[3] - bounds[1] + 1;
+                if (rows * cols > Integer.MAX_VALUE)
+                    throw new IOException("pattern too large for a configuration: " + file.getName());
+                handler.field("dim", rows + "," + cols);
+                macrocell.cells(bounds[0], bounds[1], (int) rows, (int) cols, handler);
+            } else if (!Rle.read(file, handler)) return false;
+            Config.register(config[0]);
+            System.out.println("loaded config: " + file.getName());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return true;
+    }
+
     private static String getFilesPath(String fileName) {
         return JNode.getParent().sketchPath() + "/src/game_objs/" + fileName;
     }
@@ -146,16 +275,18 @@ public class Context extends Displayable implements KeyControl {
     }
 
     public static File[] listOfFiles(String dir) {
-        File folder = new File(Context.getFilesPath(dir));
-        File[] listOfFiles = folder.listFiles();
-        if (listOfFiles == null) {
-            @SuppressWarnings("ConstantConditions") File alternateFolder = new File(Context.getAlternativePath(dir));
-            listOfFiles = alternateFolder.listFiles();
-        }
+        File[] listOfFiles = folderOf(dir).listFiles();
         assert listOfFiles != null;
         return listOfFiles;
     }
 
+    private static File folderOf(String dir) {
+        File folder = new File(Context.getFilesPath(dir));
+        if (folder.isDirectory()) return folder;
+        //noinspection ConstantConditions
+        return new File(Context.getAlternativePath(dir));
+    }
+
     public boolean isCellGridVisible() {
         return cellGridVisible;
     }
@@ -175,16 +306,11 @@ public class Context extends Displayable implements KeyControl {
 
     /**
      * initializes the iteration event listener. The event listener is invoked
-     * by JNode each time the game context is iterated. The event listener updates
-     * the cell matrix so that one iteration of Conway's Game of Life is performed.
+     * by JNode on every frame and updates the cell matrix to the latest generation
+     * published by the simulation thread, which computes the generations at its own pace.
      */
     private void initEventListeners() {
-        this.addEventListener(new EventListener("@ITERATOR", Event.CONTINUOUS).attachMethod(() -> {
-            if (System.currentTimeMillis() - lastIteratedMillis > millisPerIteration) {
-                iterate();
-                lastIteratedMillis = System.currentTimeMillis();
-            }
-        }).setDisabled(true));
+        this.addEventListener(new EventListener("@ITERATOR", Event.CONTINUOUS).attachMethod(this::render));
     }
 
     /**
@@ -193,7 +319,6 @@ public class Context extends Displayable implements KeyControl {
      */
     private void initializeCellMatrix() {
         cellMatrix = new Cell[rows][columns];
-        activeCells = new ArrayList<>();
         for (int r = 0; r < rows; r++) {
             for (int c = 0; c < columns; c++) {
                 cellMatrix[r][c] = new Cell(false, r, c);
@@ -288,17 +413,17 @@ public class Context extends Displayable implements KeyControl {
         float th = Math.abs(begin.y - end.y) + begin.w;
         getParent().rect(tx, ty, tw, th);
         getParent().popStyle();
-        for (Cell cell : activeCells)
-            if (cell.isAlive() && cell.x >= tx && cell.y >= ty)
-                if (cell.x + cell.w <= tx + tw && cell.y + cell.w <= ty + th)
-                    cell.highlight();
+        for (int r = Math.min(beginPos[0], endPos[0]); r <= Math.max(beginPos[0], endPos[0]); r++)
+            for (int c = Math.min(beginPos[1], endPos[1]); c <= Math.max(beginPos[1], endPos[1]); c++)
+                if (cellMatrix[r][c].isAlive())
+                    cellMatrix[r][c].highlight();
     }
 
     void select(int[] beginPos, int[] endPos) {
-        for (Cell cell : activeCells)
-            if (cell.isAlive() && cell.row >= beginPos[0] && cell.row <= endPos[0])
-                if (cell.col >= beginPos[1] && cell.col <= endPos[1])
-                    selected.add(cell);
+        for (int r = beginPos[0]; r <= endPos[0]; r++)
+            for (int c = beginPos[1]; c <= endPos[1]; c++)
+                if (cellMatrix[r][c].isAlive())
+                    selected.add(cellMatrix[r][c]);
     }
 
     @Override
@@ -347,17 +472,6 @@ public class Context extends Displayable implements KeyControl {
         return !(diffWidth > diffHeight) ? y + h / 2 - cellMatrixHeight() / 2 : y;
     }
 
-    /*
-    private void applyRule30(boolean[][] input) {
-        for (Cell cell : activeCells) {
-            boolean pos00 = getCell(cell.row - 1, cell.col - 1).isAlive();
-            boolean pos01 = getCell(cell.row - 1, cell.col).isAlive();
-            boolean pos02 = getCell(cell.row - 1, cell.col + 1).isAlive();
-            input[cell.row][cell.col] = !(pos00 && pos01 && pos02) && !(pos00 && pos01) && (pos00 && pos02 || pos00 || pos01 && pos02 || pos01 || pos02);
-        }
-    }
-    */
-
     /**
      * render the cells
      */
@@ -378,34 +492,9 @@ public class Context extends Displayable implements KeyControl {
      * @return cell at the designated position
      */
     private Cell getCell(int row, int col) {
-        int pos[] = getCorrectedPos(row, col);
-        return cellMatrix[pos[0]][pos[1]];
-    }
-
-    private int[] getCorrectedPos(int row, int col) {
-        row = row >= this.rows ? row - rows : row;
-        row = row <= -1 ? this.rows + row : row;
-        col = col >= this.columns ? col - columns : col;
-        col = col <= -1 ? this.columns + col : col;
-        return new int[]{row, col};
-    }
-
-    /**
-     * @param row row in which the center cell is located
-     * @param col column in which the center cell is located
-     * @return the number of living cells around the center cell
-     */
-    private int numCellsAlive(int row, int col) {
-        int count = 0;
-        for (int i = -1; i <= 1; i++) {
-            for (int q = -1; q <= 1; q++) {
-                if (i == 0 && q == 0) continue;
-                int[] pos = getCorrectedPos(row + i, col + q);
-                if (getCell(pos[0], pos[1]).isAlive())
-                    count++;
-            }
-        }
-        return count;
+        row = row >= rows ? row - rows : row <= -1 ? row + rows : row;
+        col = col >= columns ? col - columns : col <= -1 ? col + columns : col;
+        return cellMatrix[row][col];
     }
 
     /**
@@ -417,58 +506,200 @@ public class Context extends Displayable implements KeyControl {
      * 4. a dead cell with exactly three living neighbours comes alive.
      */
     public void iterate() {
-        resultMatrix = new boolean[rows][columns];
-
-        //generate the result of the iteration using multi-threading techniques.
-        ThreadGroup threadGroup = new ThreadGroup("computation");
-        ArrayList<Computation> computations = new ArrayList<>();
-        int indexSpan = activeCells.size() / availableProcessors + 1; //TODO: multi-threading actually made it slower!
-        //System.out.println(getParent().frameRate);
-        int i = 0;
-        while (true) {
-            if (i + indexSpan >= activeCells.size()) {
-                computations.add(new Computation("", threadGroup, i, activeCells.size() - 1));
-                break;
-            } else {
-                computations.add(new Computation("", threadGroup, i, i + indexSpan));
-                i += indexSpan + 1;
-            }
-        }
-        for (Computation computation : computations)
-            computation.start();
-
-        while (threadGroup.activeCount() > 0) {
-            //
-        }
+        simulationThread.submit(Simulation::step);
+    }
 
+    /**
+     * advances the game by the given number of generations at once. Engines such as
+     * HashLife skip the intermediate generations altogether.
+     *
+     * @param generations number of generations
+     */
+    public void jump(long generations) {
+        simulationThread.submit(simulation -> simulation.step(generations));
+    }
 
-        activeCells = new ArrayList<>();
+    /**
+     * invoked by a cell whenever its state is changed so that the simulation stays
+     * consistent with what is displayed on screen.
+     */
+    void cellUpdated(int row, int col, boolean alive) {
+        if (syncingCells) return;
+        simulationThread.submit(simulation -> simulation.setAlive(row, col, alive));
+    }
 
-        //updates the cells according to the result obtained
+    /**
+     * updates the cells on screen to the latest snapshot of the simulation, if there is one.
+     * Snapshots taken before the simulation caught up with the changes made on screen
+     * are skipped, since they would briefly undo them.
+     */
+    private void render() {
+        //a change the simulation refused, such as a rule the engine can't run, is left as it was.
+        for (String error; (error = simulationThread.pollError()) != null; )
+            System.out.println(error);
+        //the statistics are only taken while they are on screen.
+        boolean statisticsShown = false;
+        for (Displayable label : JNode.get("@STATISTICS"))
+            statisticsShown |= label.isVisible();
+        if (statisticsShown != simulationThread.isTakingStatistics())
+            simulationThread.setTakingStatistics(statisticsShown);
+        Snapshot snapshot = simulationThread.poll();
+        if (snapshot == null || snapshot.getCommandsApplied() < simulationThread.getCommandsSubmitted())
+            return;
+        syncingCells = true;
+        if (snapshot.getRows() != rows || snapshot.getColumns() != columns)
+            resizeCellMatrix(snapshot.getRows(), snapshot.getColumns());
+        int states = snapshot.getRule().getStates();
         for (int r = 0; r < rows; r++)
             for (int c = 0; c < columns; c++) {
-                cellMatrix[r][c].setAlive(resultMatrix[r][c]);
+                int state = snapshot.getState(r, c);
+                if (cellMatrix[r][c].getState() != state)
+                    cellMatrix[r][c].setState(state, states);
             }
+        syncingCells = false;
+        rendered = snapshot;
+        String status = String.format("gen %d, %.0f gen/s", snapshot.getGeneration(), snapshot.getGenerationsPerSecond());
+        if (snapshot.getPeriod() == 1) status += ", still";
+        else if (snapshot.getPeriod() > 1) status += ", p" + snapshot.getPeriod();
+        String finalStatus = status;
+        JNode.get("@GENERATION").forEach(label -> ((Label) label).setContent(finalStatus));
+        if (snapshot.getStatistics() != null)
+            JNode.get("@STATISTICS").forEach(label -> ((Label) label).setContent(snapshot.getStatistics().toString()));
+        //the simulation pauses by itself when it stops on a cycle.
+        if (!simulationThread.isRunning())
+            JNode.get("@ITERATION").forEach(flowControl -> ((Switch) flowControl).setState(false));
+        if (controlsOutdated) {
+            updateControls();
+            controlsOutdated = false;
+        }
+    }
 
+    /**
+     * updates the controls that show the engine, the rule and the topology.
+     */
+    private void updateControls() {
+        JNode.get("@ENGINE").forEach(button -> ((Button) button).setContent(rendered.getEngineName()));
+        JNode.get("@RULE").forEach(input -> ((TextInput) input).setContent(rendered.getRule().toString()));
+        JNode.get("@NEIGHBOURHOOD").forEach(input -> ((TextInput) input).setContent(rendered.getNeighbourhood().toString()));
+        JNode.get("@BOUNDARY").forEach(button -> ((Button) button).setContent(rendered.getBoundary().toString()));
     }
 
-    void setActive(int row, int col) {
-        for (int i = -1; i <= 1; i++) {
-            for (int q = -1; q <= 1; q++) {
-                Cell designated = getCell(row + i, col + q);
-                if (!activeCells.contains(designated))
-                    activeCells.add(designated);
-            }
-        }
+    /**
+     * makes a change to the simulation on its own thread; the controls are updated once
+     * the change is on screen.
+     */
+    private void submit(Consumer<Simulation> command) {
+        controlsOutdated = true;
+        simulationThread.submit(command);
+    }
+
+    /**
+     * switches the engine that computes the iterations. The engine is left as it was if the
+     * new one can't run the rule or the topology.
+     *
+     * @param name one of ENGINES
+     */
+    public void setEngine(String name) {
+        submit(simulation -> simulation.setEngine(name));
+    }
+
+    /**
+     * @return the rule shown on screen
+     */
+    public Rule getRule() {
+        return rendered == null ? Rule.CONWAY : rendered.getRule();
+    }
+
+    public Neighbourhood getNeighbourhood() {
+        return rendered == null ? Neighbourhood.MOORE : rendered.getNeighbourhood();
+    }
+
+    public Boundary getBoundary() {
+        return rendered == null ? Boundary.TORUS : rendered.getBoundary();
     }
 
+    /**
+     * switches the cells that count as neighbours, for instance to "von Neumann",
+     * "hexagonal" or a custom mask such as "010/101/010". Only the classic engine runs
+     * neighbourhoods other than the Moore neighbourhood, so it takes over from any other.
+     *
+     * @param neighbourhood the neighbourhood as accepted by Neighbourhood.parse()
+     */
+    public void setNeighbourhood(String neighbourhood) {
+        submit(simulation -> simulation.setNeighbourhood(Neighbourhood.parse(neighbourhood)));
+    }
+
+    /**
+     * switches what lies beyond the edges of the grid. Only the classic engine runs
+     * boundaries other than the torus, so it takes over from any other.
+     *
+     * @param boundary the boundary
+     */
+    public void setBoundary(Boundary boundary) {
+        submit(simulation -> simulation.setBoundary(boundary));
+    }
+
+    /**
+     * switches the rule of the game, for instance to "B36/S23" (HighLife). The rule is
+     * left untouched if the rulestring is invalid or the engine can't run the rule.
+     * Multi-state rules such as "B2/S/C3" (Brian's Brain) switch to the Generations engine,
+     * rules of a larger range such as "R5,C0,M1,S34..58,B34..45,NM" to the Larger than Life engine
+     * and elementary rules such as "W30" to the elementary engine.
+     *
+     * @param rulestring the rule in B/S notation
+     */
+    public void setRule(String rulestring) {
+        submit(simulation -> simulation.setRule(Rule.parse(rulestring)));
+    }
+
+    /**
+     * @param millis the least number of milliseconds between two iterations, regardless
+     *               of the frame rate
+     */
     public void setMillisPerIteration(int millis) {
-        this.millisPerIteration = millis;
+        simulationThread.setMillisPerStep(millis);
+    }
+
+    /**
+     * turbo mode: computes the given number of generations per iteration, of which only
+     * the last one is drawn.
+     *
+     * @param generations number of generations, at least 1
+     */
+    public void setGenerationsPerIteration(int generations) {
+        simulationThread.setGenerationsPerStep(generations);
+    }
+
+    /**
+     * toggles whether the game looks for still lifes and oscillators. It is off unless asked
+     * for, as engines that don't keep the hash of the universe as they step, such as HashLife,
+     * pay for a pass over the universe every generation.
+     */
+    public void toggleCycleDetection() {
+        cycleDetection = !cycleDetection;
+        boolean enabled = cycleDetection;
+        simulationThread.submit(simulation -> simulation.setCycleDetection(enabled));
+    }
+
+    /**
+     * toggles whether to pause once the game has settled into a still life or an oscillator,
+     * rather than to keep going and skip whole periods; see toggleCycleDetection().
+     */
+    public void toggleStoppingOnCycle() {
+        simulationThread.setStoppingOnCycle(!simulationThread.isStoppingOnCycle());
+    }
+
+    /**
+     * toggles whether games are saved in the #saved text format, the default, or as binary
+     * checkpoints, which take a bit per cell and keep the generation; see Checkpoint. Both
+     * are loaded back the same way.
+     */
+    public void toggleSavingCheckpoints() {
+        savingCheckpoints = !savingCheckpoints;
     }
 
     public void toggleAutoIteration() {
-        EventListener iterator = this.getEventListener("@ITERATOR");
-        iterator.setDisabled(!iterator.isDisabled());
+        simulationThread.setRunning(!simulationThread.isRunning());
     }
 
     /**
@@ -481,6 +712,28 @@ public class Context extends Displayable implements KeyControl {
     public void setDimension(int rows, int cols) {
         if (rows == this.rows && cols == this.columns)
             return;
+        syncingCells = true;
+        resizeCellMatrix(rows, cols);
+        syncingCells = false;
+
+        //the cells that remain on screen are carried over into the resized simulation.
+        byte[] states = new byte[rows * cols];
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++)
+                states[r * cols + c] = (byte) cellMatrix[r][c].getState();
+        simulationThread.submit(simulation -> {
+            simulation.setDimension(rows, cols);
+            for (int r = 0; r < rows; r++)
+                for (int c = 0; c < cols; c++)
+                    if (states[r * cols + c] != 0)
+                        simulation.setState(r, c, states[r * cols + c]);
+        });
+    }
+
+    /**
+     * updates the dimension of the cell matrix without touching the simulation.
+     */
+    private void resizeCellMatrix(int rows, int cols) {
         if (rows >= this.rows && cols >= this.columns) {
             Cell[][] updatedMatrix = new Cell[rows][cols];
             for (int r = 0; r < rows; r++) {
@@ -502,7 +755,6 @@ public class Context extends Displayable implements KeyControl {
                         JNode.ripOff(cellMatrix[r][c]);
                 }
             }
-            activeCells = new ArrayList<>();
         } else {
             this.dispose();//resource expensive
             this.rows = rows;
@@ -515,10 +767,12 @@ public class Context extends Displayable implements KeyControl {
     }
 
     public void clear() {
+        syncingCells = true;
         for (int r = 0; r < rows; r++)
             for (int c = 0; c < columns; c++)
                 cellMatrix[r][c].setAlive(false);
-        resultMatrix = new boolean[rows][columns];
+        syncingCells = false;
+        simulationThread.submit(Simulation::clear);
     }
 
     /**
@@ -555,23 +809,21 @@ public class Context extends Displayable implements KeyControl {
      * @param file the saved game file to be loaded
      */
     public void load(File file) {
-        String lines[] = PApplet.loadStrings(file);
-        if (!lines[0].equals("#saved")) return;
-        String dim[] = lines[1].substring(lines[1].indexOf(":") + 1).split(",");
-        this.setDimension(Integer.valueOf(dim[0]), Integer.valueOf(dim[1]));
-        this.clear();
-        String[] activeCellCoordinates = lines[2].substring(lines[2].indexOf(":") + 1).split(";");
-        for (String coordinate : activeCellCoordinates) {
-            String[] pos = coordinate.split(",");
-            if (pos[0].equals("") || pos[1].equals("")) break;
-            cellMatrix[Integer.valueOf(pos[0])][Integer.valueOf(pos[1])].setAlive(true);
-        }
-        System.out.println("loaded saved game:" + file.getName());
+        submit(simulation -> {
+            try {
+                simulation.load(file);
+                System.out.println("loaded saved game:" + file.getName());
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        });
     }
 
     /**
      * use "saved" for saved games, use "configs" for saving permanent configurations.
      * if it is saved as a configuration, then it would be available for manipulation.
+     * saved games are written in the #saved format, or as checkpoints if chosen; see
+     * toggleSavingCheckpoints().
      *
      * @param fileName the name of the file to be saved
      * @param type     saved as a configuration or a plain "saved game"
@@ -580,38 +832,42 @@ public class Context extends Displayable implements KeyControl {
     public void save(String fileName, String type) {
         try {
             String path = runningAsApplication ? getAlternativePath(type) : getFilesPath(type);
-            PrintWriter writer = new PrintWriter(path + "/" + fileName, "UTF-8");
-            writer.println("#" + type);
             if (type.equals("saved")) {
-                writer.println("~ dim:" + rows + "," + columns);
-                writer.print("~ pos:");
-                for (int r = 0; r < rows; r++) {
-                    for (int c = 0; c < columns; c++) {
-                        if (cellMatrix[r][c].isAlive())
-                            writer.print(r + "," + c + ";");
-                    }
-                }
-            } else {
-                int lowestCol = this.columns, lowestRow = this.rows;
-                int largestCol = 0, largestRow = 0;
-                ArrayList<Cell> aliveCells = new ArrayList<>();
-                for (int r = 0; r < rows; r++) {
-                    for (int c = 0; c < columns; c++) {
-                        Cell cell = cellMatrix[r][c];
-                        if (!cell.isAlive()) continue;
-                        lowestCol = c < lowestCol ? c : lowestCol;
-                        lowestRow = r < lowestRow ? r : lowestRow;
-                        largestCol = c > largestCol ? c : largestCol;
-                        largestRow = r > largestRow ? r : largestRow;
-                        aliveCells.add(cell);
+                //the simulation is written on its own thread, so that the generation is saved whole.
+                File file = new File(path + "/" + fileName);
+                boolean checkpoint = savingCheckpoints;
+                simulationThread.submit(simulation -> {
+                    try {
+                        if (checkpoint) simulation.saveCheckpoint(file);
+                        else simulation.save(file);
+                        System.out.println("saved: " + fileName);
+                    } catch (IOException e) {
+                        e.printStackTrace();
                     }
+                });
+                return;
+            }
+            PrintWriter writer = new PrintWriter(path + "/" + fileName, "UTF-8");
+            writer.println("#" + type);
+            int lowestCol = this.columns, lowestRow = this.rows;
+            int largestCol = 0, largestRow = 0;
+            ArrayList<Cell> aliveCells = new ArrayList<>();
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    Cell cell = cellMatrix[r][c];
+                    if (!cell.isAlive()) continue;
+                    lowestCol = c < lowestCol ? c : lowestCol;
+                    lowestRow = r < lowestRow ? r : lowestRow;
+                    largestCol = c > largestCol ? c : largestCol;
+                    largestRow = r > largestRow ? r : largestRow;
+                    aliveCells.add(cell);
                 }
-                writer.println("~ dim:" + (largestRow - lowestRow) + "," + (largestCol - lowestCol));
-                writer.print("~ pos:");
-                final int finalLowestCol = lowestCol;
-                final int finalLowestRow = lowestRow;
-                aliveCells.forEach(cell -> writer.print((cell.row - finalLowestRow) + "," + (cell.col - finalLowestCol) + ";"));
             }
+            writer.println("~ dim:" + (largestRow - lowestRow) + "," + (largestCol - lowestCol));
+            writer.print("~ pos:");
+            final int finalLowestCol = lowestCol;
+            final int finalLowestRow = lowestRow;
+            aliveCells.forEach(cell -> writer.print((cell.row - finalLowestRow) + "," + (cell.col - finalLowestCol) + ";"));
             writer.close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -709,24 +965,29 @@ public class Context extends Displayable implements KeyControl {
     }
 
     /**
-     * spawn random cells in the cell matrix
+     * spawn random cells in the cell matrix. The soup is generated by the simulation thread,
+     * in parallel; see Simulation.flipRandom().
      *
      * @param chance a number between 0 and 1 that indicates whether or
-     *               not the cell would be alive.
+     *               not the cell would be flipped.
      */
     public void spawnRandom(float chance) {
-        for (Cell[] cells : cellMatrix)
-            for (Cell cell : cells)
-                if (Math.random() < chance)
-                    cell.setAlive(!cell.isAlive());
+        long seed = System.nanoTime();
+        simulationThread.submit(simulation -> simulation.flipRandom(chance, seed));
     }
 
     private static class Config {
-        private static ArrayList<Config> configs;
-
-        static {
-            configs = new ArrayList<>();
-        }
+        private static final String INDEX = ".index";
+        private static final int CACHE_SIZE = 64;
+        //the configurations in the folder by their names, with what is known without their cells.
+        private static HashMap<String, Entry> index = new HashMap<>();
+        //the configurations whose cells have been read, the least recently used first.
+        private static LinkedHashMap<String, Config> cache = new LinkedHashMap<String, Config>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Config> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
 
         private ArrayList<int[]> coordinates;
         private String name;
@@ -744,15 +1005,112 @@ public class Context extends Displayable implements KeyControl {
         }
 
         private static void register(Config config) {
-            configs.add(config);
+            cache.put(config.name, config);
         }
 
+        /**
+         * @return the configuration of the given name, whose cells are read from its file if
+         * it isn't in the cache, or null if there is none
+         */
         @Nullable
         private static Config extract(String name) {
-            for (Config config : configs)
-                if (config.name.equals(name))
-                    return config;
-            return null;
+            Config config = cache.get(name);
+            Entry entry = index.get(name);
+            if (config == null && entry != null) {
+                importConfig(entry.file);
+                config = cache.get(name);
+            }
+            return config;
+        }
+
+        /**
+         * brings the entry of a file up to date. A file whose length and time of modification
+         * match its entry is left alone, and one whose content hash still matches only gets
+         * its time updated; any other is read.
+         *
+         * @return true if the index has changed
+         */
+        private static boolean index(File file) {
+            String name = file.getName();
+            Entry entry = index.get(name);
+            if (entry != null) {
+                entry.file = file;
+                if (entry.length == file.length() && entry.modified == file.lastModified()) return false;
+            }
+            long hash;
+            try {
+                hash = hash(file);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return index.remove(name) != null;
+            }
+            if (entry == null || entry.length != file.length() || entry.hash != hash) {
+                cache.remove(name);
+                importConfig(file);
+                Config config = cache.get(name);
+                if (config == null) return index.remove(name) != null;
+                entry = new Entry();
+                entry.file = file;
+                entry.rows = config.rows;
+                entry.cols = config.cols;
+                entry.population = config.coordinates.size();
+                entry.hash = hash;
+                index.put(name, entry);
+            }
+            entry.length = file.length();
+            entry.modified = file.lastModified();
+            return true;
+        }
+
+        private static long hash(File file) throws IOException {
+            CRC32 crc = new CRC32();
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                byte[] buffer = new byte[1 << 16];
+                for (int read; (read = in.read(buffer)) > 0; )
+                    crc.update(buffer, 0, read);
+            }
+            return crc.getValue();
+        }
+
+        /**
+         * reads the index written by writeIndex(), a line per configuration:
+         * <pre>
+         * name, length, time of modification, rows, columns, population, content hash
+         * </pre>
+         * separated by tabs. A missing or unreadable index leaves every file to be read.
+         */
+        private static void readIndex(File indexFile) {
+            index.clear();
+            if (!indexFile.isFile()) return;
+            try {
+                List<String> lines = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8);
+                if (lines.isEmpty() || !lines.get(0).equals("#configs-index")) return;
+                for (String line : lines.subList(1, lines.size())) {
+                    String[] values = line.split("\t");
+                    if (values.length != 7) continue;
+                    Entry entry = new Entry();
+                    entry.length = Long.parseLong(values[1]);
+                    entry.modified = Long.parseLong(values[2]);
+                    entry.rows = Integer.parseInt(values[3]);
+                    entry.cols = Integer.parseInt(values[4]);
+                    entry.population = Integer.parseInt(values[5]);
+                    entry.hash = Long.parseLong(values[6], 16);
+                    index.put(values[0], entry);
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("invalid index: " + e.getMessage());
+                index.clear();
+            }
+        }
+
+        private static void writeIndex(File indexFile) {
+            try (PrintWriter writer = new PrintWriter(indexFile, "UTF-8")) {
+                writer.println("#configs-index");
+                index.forEach((name, entry) -> writer.println(name + "\t" + entry.length + "\t" + entry.modified + "\t"
+                        + entry.rows + "\t" + entry.cols + "\t" + entry.population + "\t" + Long.toHexString(entry.hash)));
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
         }
 
         private void add(int row, int col) {
@@ -802,6 +1160,16 @@ public class Context extends Displayable implements KeyControl {
             cols = temp;
         }
 
+        private static class Entry {
+            private File file;
+            private long length;
+            private long modified;
+            private int rows;
+            private int cols;
+            private int population;
+            private long hash;
+        }
+
         private enum Dir {
             HORIZONTAL,
             VERTICAL,
@@ -809,29 +1177,4 @@ public class Context extends Displayable implements KeyControl {
         }
 
     }
-
-    private class Computation extends Thread {
-        private int startIndex, endIndex;
-
-        private Computation(String name, ThreadGroup threadGroup, int startIndex, int endIndex) {
-            super(threadGroup, name);
-            this.startIndex = startIndex;
-            this.endIndex = endIndex;
-        }
-
-        private void compute() {
-            for (int i = startIndex; i <= endIndex; i++) {
-                Cell cell = activeCells.get(i);
-                int numAlive = numCellsAlive(cell.row, cell.col);
-                if (cell.isAlive())
-                    resultMatrix[cell.row][cell.col] = numAlive > 1 && numAlive < 4;
-                else resultMatrix[cell.row][cell.col] = numAlive == 3;
-            }
-        }
-
-        @Override
-        public void run() {
-            this.compute();
-        }
-    }
 }
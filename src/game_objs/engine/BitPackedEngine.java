@@ -0,0 +1,283 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Stores every row of the universe as a bitset of longs and computes the next
+ * generation 64 cells at a time. The eight neighbours of a word are obtained by
+ * shifting the rows above, at and below it; their per-cell sum is then formed with
+ * bitwise full adders so that no cell is ever visited on its own.
+ * <p>
+ * Bits beyond the last column of a row are always kept at zero.
+ */
+public class BitPackedEngine implements Engine {
+    int rows;
+    int columns;
+    long[][] current;
+    long[][] next;
+    Rule rule = Rule.CONWAY;
+    private long generation;
+    private long hash;
+    private Census census;
+    private WorkerPool workerPool;
+    private int slices;
+    //the change of the hash made by each slice, combined once all of them are done.
+    private long[] sliceHashes = new long[1];
+    private final IntConsumer stepSlice = slice -> {
+        stepRows(sliceBoundary(slice), sliceBoundary(slice + 1));
+        sliceHashes[slice] = changes(slice, sliceBoundary(slice), sliceBoundary(slice + 1));
+    };
+
+    public BitPackedEngine(int rows, int columns) {
+        setDimension(rows, columns);
+    }
+
+    /**
+     * @param workerPool the pool among whose workers bands of rows are divided
+     */
+    public BitPackedEngine(int rows, int columns, WorkerPool workerPool) {
+        this(rows, columns);
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * @param columns number of columns
+     * @return the number of longs needed to hold a row of the given width.
+     */
+    static int wordsPerRow(int columns) {
+        return (columns + 63) >>> 6;
+    }
+
+    /**
+     * computes the next generation of a single row. The rows are expected to have
+     * the same length; the row to the left of column 0 is column (columns - 1).
+     *
+     * @param above   the row above, wrapped around if necessary
+     * @param row     the row to be computed
+     * @param below   the row below, wrapped around if necessary
+     * @param out     receives the next generation of the row
+     * @param columns number of columns
+     * @param rule    the rule to be applied
+     */
+    static void stepRow(long[] above, long[] row, long[] below, long[] out, int columns, Rule rule) {
+        int last = wordsPerRow(columns) - 1;
+        int lastBit = (columns - 1) & 63;
+        for (int w = 0; w <= last; w++) {
+            long n = above[w], c = row[w], s = below[w];
+
+            //the neighbour to the west of a cell lands on the cell's own bit and vice versa.
+            long nw, w0, sw, ne, e0, se;
+            if (w > 0) {
+                nw = (n << 1) | (above[w - 1] >>> 63);
+                w0 = (c << 1) | (row[w - 1] >>> 63);
+                sw = (s << 1) | (below[w - 1] >>> 63);
+            } else {
+                nw = (n << 1) | ((above[last] >>> lastBit) & 1L);
+                w0 = (c << 1) | ((row[last] >>> lastBit) & 1L);
+                sw = (s << 1) | ((below[last] >>> lastBit) & 1L);
+            }
+            if (w < last) {
+                ne = (n >>> 1) | (above[w + 1] << 63);
+                e0 = (c >>> 1) | (row[w + 1] << 63);
+                se = (s >>> 1) | (below[w + 1] << 63);
+            } else {
+                ne = (n >>> 1) | ((above[0] & 1L) << lastBit);
+                e0 = (c >>> 1) | ((row[0] & 1L) << lastBit);
+                se = (s >>> 1) | ((below[0] & 1L) << lastBit);
+            }
+
+            //full adders on the top three and the middle pair + south west, half adder on the rest.
+            long x0 = nw ^ n, s0 = x0 ^ ne, c0 = (nw & n) | (x0 & ne);
+            long x1 = w0 ^ e0, s1 = x1 ^ sw, c1 = (w0 & e0) | (x1 & sw);
+            long s2 = s ^ se, c2 = s & se;
+
+            //ones: sum of s0, s1, s2
+            long x3 = s0 ^ s1;
+            long bit0 = x3 ^ s2, c3 = (s0 & s1) | (x3 & s2);
+
+            //twos: sum of c0, c1, c2 and c3
+            long x4 = c0 ^ c1, t = x4 ^ c2, c4 = (c0 & c1) | (x4 & c2);
+            long bit1 = t ^ c3, c5 = t & c3;
+
+            //fours and eights: sum of c4 and c5
+            long bit2 = c4 ^ c5, bit3 = c4 & c5;
+
+            long result = rule.apply(c, bit0, bit1, bit2, bit3);
+            out[w] = w < last ? result : result & (-1L >>> (63 - lastBit));
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public void setDimension(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        current = new long[rows][wordsPerRow(columns)];
+        next = new long[rows][wordsPerRow(columns)];
+        generation = 0;
+        hash = 0;
+        census = new Census(rows, columns);
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        return (current[row][col >>> 6] >>> col & 1L) != 0;
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        if (isAlive(row, col) != alive) {
+            hash ^= Zobrist.key(row, col);
+            census.set(row, col, alive);
+        }
+        if (alive) current[row][col >>> 6] |= 1L << col;
+        else current[row][col >>> 6] &= ~(1L << col);
+    }
+
+    /**
+     * loads are handed over in batches, so the census is kept up to date cell by cell rather
+     * than counted again after every batch.
+     */
+    @Override
+    public void setAlive(int[] coordinates, int length) {
+        for (int i = 0; i + 1 < length; i += 2) {
+            int row = coordinates[i], col = coordinates[i + 1];
+            long before = current[row][col >>> 6];
+            if ((before >>> col & 1L) != 0) continue;
+            current[row][col >>> 6] = before | 1L << col;
+            hash ^= Zobrist.key(row, col);
+            census.set(row, col, true);
+        }
+    }
+
+    @Override
+    public long bits(int row, int col) {
+        return current[row][col >>> 6];
+    }
+
+    @Override
+    public void flip(int row, int col, long bits) {
+        long before = current[row][col >>> 6];
+        current[row][col >>> 6] = before ^ bits;
+        hash ^= census.flipped(row, col >>> 6, before, before ^ bits);
+    }
+
+    @Override
+    public void step() {
+        //small grids are not worth the hand-off to the workers.
+        slices = workerPool == null || (long) rows * wordsPerRow(columns) < 1 << 14 ? 1 : workerPool.getParallelism();
+        census.prepare(slices);
+        if (slices == 1) {
+            stepRows(0, rows);
+            hash ^= changes(0, 0, rows);
+        } else {
+            if (sliceHashes.length < slices) sliceHashes = new long[slices];
+            workerPool.run(slices, stepSlice);
+            for (int i = 0; i < slices; i++)
+                hash ^= sliceHashes[i];
+        }
+        census.merge(slices);
+        long[][] temp = current;
+        current = next;
+        next = temp;
+        generation++;
+    }
+
+    /**
+     * @return the first row of the slice; slices always start on an even row.
+     */
+    private int sliceBoundary(int slice) {
+        return slice == slices ? rows : rows * slice / slices & ~1;
+    }
+
+    /**
+     * computes the next generation of a band of rows into the next buffer.
+     *
+     * @param from first row, inclusive
+     * @param to   last row, exclusive
+     */
+    void stepRows(int from, int to) {
+        for (int r = from; r < to; r++) {
+            long[] above = current[r == 0 ? rows - 1 : r - 1];
+            long[] below = current[r == rows - 1 ? 0 : r + 1];
+            stepRow(above, current[r], below, next[r], columns, rule);
+        }
+    }
+
+    /**
+     * counts the cells of a band that differ between the current and the next buffer.
+     *
+     * @param slice the slice, under which the births and deaths are counted
+     * @param from  first row, inclusive
+     * @param to    last row, exclusive
+     * @return the keys of the changed cells, combined by exclusive or
+     */
+    private long changes(int slice, int from, int to) {
+        long hash = 0;
+        for (int r = from; r < to; r++) {
+            long[] before = current[r], after = next[r];
+            for (int w = 0; w < before.length; w++)
+                if (before[w] != after[w]) hash ^= census.changed(slice, r, w, before[w], after[w]);
+        }
+        return hash;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the hash of the universe, which is kept up to date as cells are born and die
+     */
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public long getPopulation() {
+        return census.getPopulation();
+    }
+
+    /**
+     * @return the statistics, which are kept up to date as cells are born and die
+     */
+    @Override
+    public Statistics getStatistics() {
+        return census.getStatistics(-1);
+    }
+
+    @Override
+    public void clear() {
+        for (long[] row : current)
+            Arrays.fill(row, 0);
+        hash = 0;
+        census.clear();
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule isn't life-like
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (!rule.isLifeLike())
+            throw new IllegalArgumentException("the bit-packed engines can only run life-like rules: " + rule);
+        this.rule = rule;
+    }
+}
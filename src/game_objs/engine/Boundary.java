@@ -0,0 +1,103 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+
+/**
+ * What lies beyond the edges of a bounded grid. The grid is stored with a halo of one
+ * row and one column on every side, which is filled in once per generation from the
+ * cells on the opposite edges (or left dead), so that neighbours can be read without
+ * checking for the edges. Cell (r, c) of the grid is held at [r + 1][c + 1].
+ */
+public enum Boundary {
+    TORUS("Torus") {
+        @Override
+        public void fillHalo(boolean[][] state, int rows, int columns) {
+            wrapColumns(state, rows, columns);
+            System.arraycopy(state[rows], 0, state[0], 0, columns + 2);
+            System.arraycopy(state[1], 0, state[rows + 1], 0, columns + 2);
+        }
+    },
+    DEAD_EDGE("Dead edge") {
+        @Override
+        public void fillHalo(boolean[][] state, int rows, int columns) {
+            clearColumns(state, rows, columns);
+            Arrays.fill(state[0], false);
+            Arrays.fill(state[rows + 1], false);
+        }
+    },
+    /**
+     * the left and right edges are joined.
+     */
+    CYLINDER("Cylinder") {
+        @Override
+        public void fillHalo(boolean[][] state, int rows, int columns) {
+            wrapColumns(state, rows, columns);
+            Arrays.fill(state[0], false);
+            Arrays.fill(state[rows + 1], false);
+        }
+    },
+    /**
+     * the left and right edges are joined, and so are the top and bottom edges
+     * but with the columns in reverse order.
+     */
+    KLEIN_BOTTLE("Klein bottle") {
+        @Override
+        public void fillHalo(boolean[][] state, int rows, int columns) {
+            wrapColumns(state, rows, columns);
+            for (int j = 0; j < columns + 2; j++) {
+                state[0][j] = state[rows][columns + 1 - j];
+                state[rows + 1][j] = state[1][columns + 1 - j];
+            }
+        }
+    };
+
+    private final String name;
+
+    Boundary(String name) {
+        this.name = name;
+    }
+
+    /**
+     * refreshes the halo of the grid from its cells.
+     *
+     * @param state   the grid, rows + 2 by columns + 2
+     * @param rows    number of rows of the grid without the halo
+     * @param columns number of columns of the grid without the halo
+     */
+    public abstract void fillHalo(boolean[][] state, int rows, int columns);
+
+    /**
+     * @return whether rows that wrap around come back with their columns in reverse order
+     */
+    public boolean isTwisted() {
+        return this == KLEIN_BOTTLE;
+    }
+
+    private static void wrapColumns(boolean[][] state, int rows, int columns) {
+        for (int r = 1; r <= rows; r++) {
+            state[r][0] = state[r][columns];
+            state[r][columns + 1] = state[r][1];
+        }
+    }
+
+    private static void clearColumns(boolean[][] state, int rows, int columns) {
+        for (int r = 1; r <= rows; r++) {
+            state[r][0] = false;
+            state[r][columns + 1] = false;
+        }
+    }
+
+    /**
+     * @param name the name of a boundary as returned by toString(), such as "Klein bottle"
+     */
+    public static Boundary parse(String name) {
+        for (Boundary boundary : values())
+            if (boundary.name.equalsIgnoreCase(name.trim())) return boundary;
+        throw new IllegalArgumentException("invalid boundary: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
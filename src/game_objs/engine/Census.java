@@ -0,0 +1,183 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+
+/**
+ * Keeps count of the living cells of every row and every column, along with the births
+ * and deaths of the last step, as the cells change. The bounding box is then found by
+ * scanning the counts rather than the cells.
+ * <p>
+ * Workers that step slices of the universe concurrently record into counts of their own,
+ * which are added up by merge() once all of them are done.
+ */
+class Census {
+    private long population;
+    private long births;
+    private long deaths;
+    private int[] rowPopulation;
+    private int[] columnPopulation;
+    private int[][] rowChanges = new int[1][];
+    private int[][] columnChanges = new int[1][];
+    private long[] sliceBirths = new long[1];
+    private long[] sliceDeaths = new long[1];
+
+    Census(int rows, int columns) {
+        setDimension(rows, columns);
+    }
+
+    /**
+     * forgets all cells.
+     */
+    void setDimension(int rows, int columns) {
+        rowPopulation = new int[rows];
+        columnPopulation = new int[columns];
+        for (int i = 0; i < rowChanges.length; i++) {
+            rowChanges[i] = new int[rows];
+            columnChanges[i] = new int[columns];
+        }
+        population = births = deaths = 0;
+    }
+
+    /**
+     * makes room for the counts of the given number of slices.
+     */
+    void prepare(int slices) {
+        if (rowChanges.length >= slices) return;
+        int old = rowChanges.length;
+        rowChanges = Arrays.copyOf(rowChanges, slices);
+        columnChanges = Arrays.copyOf(columnChanges, slices);
+        for (int i = old; i < slices; i++) {
+            rowChanges[i] = new int[rowPopulation.length];
+            columnChanges[i] = new int[columnPopulation.length];
+        }
+        sliceBirths = Arrays.copyOf(sliceBirths, slices);
+        sliceDeaths = Arrays.copyOf(sliceDeaths, slices);
+    }
+
+    /**
+     * records a birth in a slice that is being stepped.
+     */
+    void born(int slice, int row, int col) {
+        rowChanges[slice][row]++;
+        columnChanges[slice][col]++;
+        sliceBirths[slice]++;
+    }
+
+    /**
+     * records a death in a slice that is being stepped.
+     */
+    void died(int slice, int row, int col) {
+        rowChanges[slice][row]--;
+        columnChanges[slice][col]--;
+        sliceDeaths[slice]++;
+    }
+
+    /**
+     * records the changes of a word of a bit-packed row in a slice that is being stepped.
+     *
+     * @return the keys of the changed cells, combined by exclusive or; see Zobrist
+     */
+    long changed(int slice, int row, int w, long before, long after) {
+        long hash = 0;
+        int[] columns = columnChanges[slice];
+        for (long bits = before ^ after; bits != 0; bits &= bits - 1) {
+            int col = w << 6 | Long.numberOfTrailingZeros(bits);
+            //+1 for a birth, -1 for a death.
+            columns[col] += (int) (after >>> col & 1L) * 2 - 1;
+            hash ^= Zobrist.key(row, col);
+        }
+        int births = Long.bitCount(after & ~before), deaths = Long.bitCount(before & ~after);
+        rowChanges[slice][row] += births - deaths;
+        sliceBirths[slice] += births;
+        sliceDeaths[slice] += deaths;
+        return hash;
+    }
+
+    /**
+     * adds up the counts of the slices of a step.
+     */
+    void merge(int slices) {
+        births = deaths = 0;
+        for (int i = 0; i < slices; i++) {
+            addTo(rowPopulation, rowChanges[i]);
+            addTo(columnPopulation, columnChanges[i]);
+            births += sliceBirths[i];
+            deaths += sliceDeaths[i];
+            sliceBirths[i] = sliceDeaths[i] = 0;
+        }
+        population += births - deaths;
+    }
+
+    private static void addTo(int[] population, int[] changes) {
+        for (int i = 0; i < changes.length; i++) {
+            if (changes[i] == 0) continue;
+            population[i] += changes[i];
+            changes[i] = 0;
+        }
+    }
+
+    /**
+     * records a cell set from outside of a step.
+     */
+    void set(int row, int col, boolean alive) {
+        int change = alive ? 1 : -1;
+        rowPopulation[row] += change;
+        columnPopulation[col] += change;
+        population += change;
+    }
+
+    /**
+     * records a word of a bit-packed row changed from outside of a step.
+     *
+     * @return the keys of the changed cells, combined by exclusive or; see Zobrist
+     */
+    long flipped(int row, int w, long before, long after) {
+        long hash = 0;
+        for (long bits = before ^ after; bits != 0; bits &= bits - 1) {
+            int col = w << 6 | Long.numberOfTrailingZeros(bits);
+            columnPopulation[col] += (int) (after >>> col & 1L) * 2 - 1;
+            hash ^= Zobrist.key(row, col);
+        }
+        int change = Long.bitCount(after) - Long.bitCount(before);
+        rowPopulation[row] += change;
+        population += change;
+        return hash;
+    }
+
+    void clear() {
+        Arrays.fill(rowPopulation, 0);
+        Arrays.fill(columnPopulation, 0);
+        population = births = deaths = 0;
+    }
+
+    long getPopulation() {
+        return population;
+    }
+
+    /**
+     * @return the number of living cells in the row, as of the last merge
+     */
+    int getRowPopulation(int row) {
+        return rowPopulation[row];
+    }
+
+    /**
+     * @param activeTiles the tiles computed by the last step, or -1
+     */
+    Statistics getStatistics(int activeTiles) {
+        return new Statistics(population, births, deaths, first(rowPopulation), first(columnPopulation),
+                last(rowPopulation), last(columnPopulation), activeTiles);
+    }
+
+    private static int first(int[] population) {
+        for (int i = 0; i < population.length; i++)
+            if (population[i] != 0) return i;
+        return -1;
+    }
+
+    private static int last(int[] population) {
+        for (int i = population.length - 1; i >= 0; i--)
+            if (population[i] != 0) return i;
+        return -1;
+    }
+}
@@ -0,0 +1,165 @@
+package game_objs.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Saves a universe in a compact binary format, for checkpoints of universes too large for
+ * the "#saved" text format. Every number is little-endian:
+ * <pre>
+ * "#checkpoint\n"                          12 bytes
+ * version, rows, columns                   ints
+ * generation                               long
+ * length of the rule, the rule in UTF-8    int, bytes, padded with zeros to a multiple of 8
+ * the rows, bit-packed                     (columns + 63) / 64 longs per row
+ * the number of dying cells                long
+ * row, column, state of every dying cell   ints
+ * </pre>
+ * The rows are read from a memory-mapped window at a time, and written into the engine a
+ * word at a time; see Engine.bits() and Engine.flip(). Dying cells are only found in
+ * universes of Generations rules.
+ */
+final class Checkpoint {
+    private static final byte[] MAGIC = "#checkpoint\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int WINDOW = 1 << 26;
+
+    private Checkpoint() {
+    }
+
+    /**
+     * @return true if the file starts like a checkpoint
+     */
+    static boolean isCheckpoint(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) ;
+            return !magic.hasRemaining() && ByteBuffer.wrap(MAGIC).equals(magic.flip());
+        }
+    }
+
+    static void write(Simulation simulation, File file) throws IOException {
+        Engine engine = simulation.getEngine();
+        int rows = engine.getRows(), columns = engine.getColumns();
+        int words = BitPackedEngine.wordsPerRow(columns);
+        byte[] rule = simulation.getRule().toString().getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC).putInt(VERSION).putInt(rows).putInt(columns)
+                    .putLong(simulation.getGeneration()).putInt(rule.length).put(rule);
+            while (buffer.position() % 8 != 0) buffer.put((byte) 0);
+            for (int r = 0; r < rows; r++)
+                for (int w = 0; w < words; w++) {
+                    if (buffer.remaining() < 8) drain(channel, buffer);
+                    buffer.putLong(engine.bits(r, w << 6));
+                }
+            long dying = 0;
+            if (simulation.getRule().getStates() > 2)
+                for (int r = 0; r < rows; r++)
+                    for (int c = 0; c < columns; c++)
+                        if (simulation.getState(r, c) > 1) dying++;
+            if (buffer.remaining() < 8) drain(channel, buffer);
+            buffer.putLong(dying);
+            for (int r = 0; r < rows && dying > 0; r++)
+                for (int c = 0; c < columns; c++) {
+                    int state = simulation.getState(r, c);
+                    if (state < 2) continue;
+                    if (buffer.remaining() < 12) drain(channel, buffer);
+                    buffer.putInt(r).putInt(c).putInt(state);
+                }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * replaces the universe of a simulation by the one saved in a checkpoint.
+     *
+     * @throws IOException if the file can't be read or isn't a checkpoint
+     */
+    static void read(Simulation simulation, File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            if (header.remaining() >= 32) header.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("not a checkpoint: " + file.getName());
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("unknown checkpoint version " + version + ": " + file.getName());
+            int rows = header.getInt(), columns = header.getInt();
+            long generation = header.getLong();
+            int ruleLength = header.getInt();
+            if (rows < 1 || columns < 1 || ruleLength < 0 || ruleLength > header.remaining())
+                throw new IOException("corrupt checkpoint: " + file.getName());
+            byte[] rule = new byte[ruleLength];
+            header.get(rule);
+            long position = (header.position() + 7) & ~7L;
+
+            simulation.setDimension(rows, columns);
+            simulation.loadRule(new String(rule, StandardCharsets.UTF_8));
+            Engine engine = simulation.getEngine();
+            int words = BitPackedEngine.wordsPerRow(columns);
+            long rowBytes = words * 8L;
+            if (channel.size() < position + rows * rowBytes + 8)
+                throw new IOException("truncated checkpoint: " + file.getName());
+            long lastMask = (columns & 63) == 0 ? -1L : -1L >>> (64 - (columns & 63));
+            long[] row = new long[words];
+            int rowsPerWindow = (int) Math.max(1, WINDOW / rowBytes);
+            for (int first = 0; first < rows; first += rowsPerWindow) {
+                int count = Math.min(rowsPerWindow, rows - first);
+                LongBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position + first * rowBytes, count * rowBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                for (int r = first; r < first + count; r++) {
+                    window.get(row);
+                    row[words - 1] &= lastMask;
+                    for (int w = 0; w < words; w++)
+                        if (row[w] != 0) engine.flip(r, w << 6, row[w]);
+                }
+            }
+
+            position += rows * rowBytes;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(0);
+            channel.position(position);
+            fill(channel, buffer, 8);
+            long dying = buffer.getLong();
+            for (long i = 0; i < dying; i++) {
+                fill(channel, buffer, 12);
+                int r = buffer.getInt(), c = buffer.getInt(), state = buffer.getInt();
+                if (r < 0 || r >= rows || c < 0 || c >= columns)
+                    throw new IOException("cell out of bounds: " + r + "," + c);
+                simulation.checkState(state);
+                simulation.setState(r, c, state);
+            }
+            simulation.resume(generation);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * makes sure that the buffer holds at least the given number of bytes, reading more
+     * from the channel if need be.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        buffer.compact();
+        while (buffer.position() < bytes)
+            if (channel.read(buffer) < 0) throw new IOException("truncated checkpoint");
+        buffer.flip();
+    }
+}
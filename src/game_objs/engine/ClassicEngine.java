@@ -0,0 +1,264 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The engine the game started out with: one boolean per cell, computed tile by tile.
+ * Only the tiles in which something may change are computed (see TileTracker), and they
+ * are divided among the worker pool. It is the only engine that runs neighbourhoods other
+ * than the Moore neighbourhood and boundaries other than the torus.
+ * <p>
+ * Both state buffers are surrounded by a halo that the boundary fills in before every
+ * generation; cell (r, c) is held at [r + 1][c + 1], see Boundary.
+ */
+public class ClassicEngine implements Engine {
+    private int rows;
+    private int columns;
+    private boolean[][] stateMatrix;
+    private boolean[][] resultMatrix;
+    private TileTracker tileTracker;
+    private Rule rule = Rule.CONWAY;
+    private Neighbourhood neighbourhood = Neighbourhood.MOORE;
+    private Boundary boundary = Boundary.TORUS;
+    private int[] weights;
+    private long generation;
+    private long hash;
+    private Census census;
+    private WorkerPool workerPool;
+    private int numActive;
+    private int slices;
+    //the change of the hash made by each slice, combined once all of them are done.
+    private long[] sliceHashes = new long[1];
+    private final IntConsumer computeSlice = slice ->
+            sliceHashes[slice] = compute(slice, numActive * slice / slices, numActive * (slice + 1) / slices);
+
+    public ClassicEngine(int rows, int columns) {
+        setDimension(rows, columns);
+        setNeighbourhood(neighbourhood);
+    }
+
+    /**
+     * @param workerPool the pool among whose workers the active tiles are divided
+     */
+    public ClassicEngine(int rows, int columns, WorkerPool workerPool) {
+        this(rows, columns);
+        this.workerPool = workerPool;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * allocates the state buffers. Every tile is computed in the first generation that follows.
+     */
+    @Override
+    public void setDimension(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        stateMatrix = new boolean[rows + 2][columns + 2];
+        resultMatrix = new boolean[rows + 2][columns + 2];
+        tileTracker = new TileTracker(rows, columns);
+        tileTracker.setTwisted(boundary.isTwisted());
+        tileTracker.activateAll();
+        generation = 0;
+        hash = 0;
+        census = new Census(rows, columns);
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        return stateMatrix[row + 1][col + 1];
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        if (stateMatrix[row + 1][col + 1] != alive) {
+            hash ^= Zobrist.key(row, col);
+            census.set(row, col, alive);
+        }
+        stateMatrix[row + 1][col + 1] = alive;
+        tileTracker.markActive(row, col);
+    }
+
+    @Override
+    public void setAlive(int[] coordinates, int length) {
+        for (int i = 0; i + 1 < length; i += 2) {
+            int row = coordinates[i], col = coordinates[i + 1];
+            if (stateMatrix[row + 1][col + 1]) continue;
+            stateMatrix[row + 1][col + 1] = true;
+            hash ^= Zobrist.key(row, col);
+            census.set(row, col, true);
+        }
+        tileTracker.activateAll();
+    }
+
+    /**
+     * reads all eight surrounding cells out of the halo-padded state and weighs them by the
+     * neighbourhood, so that neither the edges nor the neighbourhood cause any branching.
+     *
+     * @param row row in which the center cell is located
+     * @param col column in which the center cell is located
+     * @return the number of living cells around the center cell
+     */
+    private int numCellsAlive(int row, int col) {
+        boolean[] above = stateMatrix[row];
+        boolean[] center = stateMatrix[row + 1];
+        boolean[] below = stateMatrix[row + 2];
+        int[] w = weights;
+        return (above[col] ? w[0] : 0) + (above[col + 1] ? w[1] : 0) + (above[col + 2] ? w[2] : 0)
+                + (center[col] ? w[3] : 0) + (center[col + 2] ? w[5] : 0)
+                + (below[col] ? w[6] : 0) + (below[col + 1] ? w[7] : 0) + (below[col + 2] ? w[8] : 0);
+    }
+
+    /**
+     * generates the next generation by dividing the active tiles among the workers.
+     * The buffers then swap roles; quiet tiles hold the same cells in both of them.
+     */
+    @Override
+    public void step() {
+        boundary.fillHalo(stateMatrix, rows, columns);
+        numActive = tileTracker.collect();
+        slices = workerPool == null || numActive < 8 ? 1 : Math.min(workerPool.getParallelism(), numActive);
+        census.prepare(slices);
+        if (slices == 1) hash ^= compute(0, 0, numActive);
+        else {
+            if (sliceHashes.length < slices) sliceHashes = new long[slices];
+            workerPool.run(slices, computeSlice);
+            for (int i = 0; i < slices; i++)
+                hash ^= sliceHashes[i];
+        }
+        census.merge(slices);
+        tileTracker.advance();
+
+        boolean[][] temp = stateMatrix;
+        stateMatrix = resultMatrix;
+        resultMatrix = temp;
+        generation++;
+    }
+
+    /**
+     * computes the next state of a slice of the active tiles; invoked by the workers.
+     *
+     * @param slice      the slice, under which the births and deaths are counted
+     * @param startIndex index of the first active tile, inclusive
+     * @param endIndex   index of the last active tile, exclusive
+     * @return the keys of the cells that were born or died, combined by exclusive or
+     */
+    private long compute(int slice, int startIndex, int endIndex) {
+        long hash = 0;
+        for (int i = startIndex; i < endIndex; i++) {
+            int tile = tileTracker.getActiveTile(i);
+            boolean changed = false;
+            for (int r = tileTracker.firstRow(tile); r < tileTracker.endRow(tile); r++) {
+                for (int c = tileTracker.firstCol(tile); c < tileTracker.endCol(tile); c++) {
+                    boolean alive = stateMatrix[r + 1][c + 1];
+                    boolean result = rule.next(alive, numCellsAlive(r, c));
+                    resultMatrix[r + 1][c + 1] = result;
+                    if (result != alive) {
+                        hash ^= Zobrist.key(r, c);
+                        if (result) census.born(slice, r, c);
+                        else census.died(slice, r, c);
+                        changed = true;
+                    }
+                }
+            }
+            if (changed) tileTracker.markChanged(tile);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the tracker whose active tiles, as gathered by the last step, are the only
+     * ones in which cells may have changed during that step
+     */
+    public TileTracker getTileTracker() {
+        return tileTracker;
+    }
+
+    @Override
+    public void collectChanged(boolean[] flags) {
+        tileTracker.collectChanged(flags);
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the hash of the universe, which is kept up to date as cells are born and die
+     */
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public long getPopulation() {
+        return census.getPopulation();
+    }
+
+    /**
+     * @return the statistics, which are kept up to date as cells are born and die
+     */
+    @Override
+    public Statistics getStatistics() {
+        return census.getStatistics(tileTracker.getNumActive());
+    }
+
+    @Override
+    public void clear() {
+        for (boolean[] row : stateMatrix)
+            Arrays.fill(row, false);
+        tileTracker.activateAll();
+        hash = 0;
+        census.clear();
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule isn't life-like
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (!rule.isLifeLike())
+            throw new IllegalArgumentException("the classic engine can only run life-like rules: " + rule);
+        this.rule = rule;
+        tileTracker.activateAll();
+    }
+
+    public Neighbourhood getNeighbourhood() {
+        return neighbourhood;
+    }
+
+    public void setNeighbourhood(Neighbourhood neighbourhood) {
+        int[] weights = new int[9];
+        for (int i = 0; i < 9; i++)
+            weights[i] = neighbourhood.weight(i / 3 - 1, i % 3 - 1);
+        this.weights = weights;
+        this.neighbourhood = neighbourhood;
+        tileTracker.activateAll();
+    }
+
+    public Boundary getBoundary() {
+        return boundary;
+    }
+
+    public void setBoundary(Boundary boundary) {
+        this.boundary = boundary;
+        tileTracker.setTwisted(boundary.isTwisted());
+        tileTracker.activateAll();
+    }
+}
@@ -0,0 +1,81 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+
+/**
+ * Recognizes a universe that has settled into a still life or an oscillator by the hashes
+ * of its generations; see Engine.getHash(). The hashes are kept in a table of fixed size,
+ * like the transposition table of a chess engine, in which every hash may take any of the
+ * WAYS slots of its bucket; once they are all taken, the oldest hash makes way for it.
+ * <p>
+ * Once the universe cycles, only the hashes of the cycle are recorded. The cycle is then
+ * found within two periods as long as one of its buckets holds no more than WAYS of them,
+ * which is all but certain for periods well below the capacity. A cycle whose hashes crowd
+ * every bucket they fall into, such as one longer than the capacity, is never found.
+ */
+public class CycleDetector {
+    private static final int WAYS = 4;
+    private final long[] hashes;
+    //the generation of each hash; -1 marks an empty slot.
+    private final long[] generations;
+    private final int mask;
+    private long period;
+    private long start;
+
+    /**
+     * @param capacity the number of hashes kept, rounded up to a power of two
+     */
+    public CycleDetector(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2 * WAYS) - 1) << 1;
+        hashes = new long[size];
+        generations = new long[size];
+        mask = size / WAYS - 1;
+        clear();
+    }
+
+    /**
+     * records the hash of a generation, which must be later than those recorded before.
+     *
+     * @return the period of the cycle, if the hash matches that of an earlier generation;
+     * 0 otherwise. It is the least period only if every generation has been recorded.
+     */
+    public long record(long hash, long generation) {
+        if (period != 0) return period;
+        int bucket = (LongHashSet.hash(hash) & mask) * WAYS, oldest = bucket;
+        for (int i = bucket; i < bucket + WAYS; i++) {
+            if (generations[i] >= 0 && hashes[i] == hash) {
+                period = generation - generations[i];
+                start = generations[i];
+                return period;
+            }
+            if (generations[i] < generations[oldest]) oldest = i;
+        }
+        hashes[oldest] = hash;
+        generations[oldest] = generation;
+        return 0;
+    }
+
+    /**
+     * @return the period of the cycle found, 1 for a still life and 0 if none was found yet
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return the generation from which on the universe repeats itself
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * forgets all generations; to be called whenever the universe is changed by other
+     * means than advancing it.
+     */
+    public void clear() {
+        Arrays.fill(generations, -1);
+        period = 0;
+        start = 0;
+    }
+}
@@ -0,0 +1,192 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs one-dimensional elementary automata, such as Rule 30, on a single row of cells
+ * that wraps around at its ends. The row is stored as a bitset of longs; the left and
+ * right neighbours of 64 cells are obtained by shifting the word, and the rule is applied
+ * to all of them at once as a sum of the minterms it maps to a living cell.
+ * <p>
+ * The grid shows the spacetime diagram of the automaton: every generation is the row
+ * below the previous one, and once the grid is full it scrolls up, so that the last
+ * generation is always the bottom row. The shown generations are kept in a ring buffer
+ * of rows, which is why a step never allocates. Setting a cell of an older generation
+ * changes the picture only; the automaton continues from the last generation.
+ */
+public class ElementaryEngine implements Engine {
+    public static final Rule RULE_30 = Rule.elementary(30);
+
+    private int rows;
+    private int columns;
+    private int words;
+    private long[][] history;
+    private long generation;
+    private Rule rule = RULE_30;
+    //one word for each of the eight neighbourhoods; all ones if the rule maps it to a living cell.
+    private final long[] minterms = new long[8];
+    private WorkerPool workerPool;
+    private int slices;
+    private long[] source;
+    private long[] target;
+    //the row the next generation is computed into when the grid has a single row, which
+    //would otherwise be read and written at once.
+    private long[] scratch;
+    private final IntConsumer stepSlice = slice -> stepWords(words * slice / slices, words * (slice + 1) / slices);
+
+    public ElementaryEngine(int rows, int columns) {
+        setDimension(rows, columns);
+        setRule(rule);
+    }
+
+    /**
+     * @param workerPool the pool among whose workers the words of very wide rows are divided
+     */
+    public ElementaryEngine(int rows, int columns, WorkerPool workerPool) {
+        this(rows, columns);
+        this.workerPool = workerPool;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public void setDimension(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        words = BitPackedEngine.wordsPerRow(columns);
+        history = new long[rows][words];
+        scratch = rows == 1 ? new long[words] : null;
+        generation = 0;
+    }
+
+    /**
+     * @return the generation shown in the given row of the grid, which may lie in the future
+     */
+    private long generationAt(int row) {
+        return generation < rows ? row : generation - rows + 1 + row;
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        long shown = generationAt(row);
+        if (shown > generation) return false;
+        return (history[(int) (shown % rows)][col >>> 6] >>> col & 1L) != 0;
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        long[] words = history[(int) (generationAt(row) % rows)];
+        if (alive) words[col >>> 6] |= 1L << col;
+        else words[col >>> 6] &= ~(1L << col);
+    }
+
+    /**
+     * @return the words of the last generation; bit (col & 63) of word (col >>> 6) holds
+     * the cell in column col. The array is reused by the following generations.
+     */
+    public long[] getCurrentRow() {
+        return history[(int) (generation % rows)];
+    }
+
+    @Override
+    public void step() {
+        source = history[(int) (generation % rows)];
+        target = rows == 1 ? scratch : history[(int) ((generation + 1) % rows)];
+        slices = workerPool == null || words < 1 << 14 ? 1 : workerPool.getParallelism();
+        if (slices == 1) stepWords(0, words);
+        else workerPool.run(slices, stepSlice);
+        if (rows == 1) {
+            history[0] = target;
+            scratch = source;
+        }
+        generation++;
+    }
+
+    /**
+     * @param from first word, inclusive
+     * @param to   last word, exclusive
+     */
+    private void stepWords(int from, int to) {
+        long[] row = source, out = target, m = minterms;
+        int last = words - 1;
+        int lastBit = (columns - 1) & 63;
+        for (int w = from; w < to; w++) {
+            long c = row[w];
+            //the left neighbour of a cell lands on the cell's own bit and vice versa.
+            long l = w > 0 ? c << 1 | row[w - 1] >>> 63 : c << 1 | row[last] >>> lastBit & 1L;
+            long r = w < last ? c >>> 1 | row[w + 1] << 63 : c >>> 1 | (row[0] & 1L) << lastBit;
+            long nl = ~l, nc = ~c, nr = ~r;
+            long result = m[0] & nl & nc & nr | m[1] & nl & nc & r | m[2] & nl & c & nr | m[3] & nl & c & r
+                    | m[4] & l & nc & nr | m[5] & l & nc & r | m[6] & l & c & nr | m[7] & l & c & r;
+            out[w] = w < last ? result : result & (-1L >>> (63 - lastBit));
+        }
+    }
+
+    /**
+     * @return true, since every row of the grid shows an earlier generation
+     */
+    @Override
+    public boolean showsHistory() {
+        return true;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the number of living cells in the last generation
+     */
+    @Override
+    public long getPopulation() {
+        long population = 0;
+        for (long word : getCurrentRow())
+            population += Long.bitCount(word);
+        return population;
+    }
+
+    /**
+     * @return a hash of the last generation, which alone determines the ones that follow
+     */
+    @Override
+    public long getHash() {
+        long hash = 0;
+        long[] row = getCurrentRow();
+        for (int w = 0; w < words; w++)
+            hash ^= Zobrist.word(0, w, row[w]);
+        return hash;
+    }
+
+    @Override
+    public void clear() {
+        for (long[] words : history)
+            Arrays.fill(words, 0);
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule isn't an elementary rule
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (!rule.isElementary())
+            throw new IllegalArgumentException("the elementary engine can only run rules such as W30: " + rule);
+        for (int k = 0; k < 8; k++)
+            minterms[k] = (rule.getWolframCode() >>> k & 1) != 0 ? -1L : 0;
+        this.rule = rule;
+    }
+}
@@ -0,0 +1,170 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+
+/**
+ * An engine owns the state of a Game of Life universe and knows how to advance it
+ * by one generation. Rows and columns are indexed from 0; the universe wraps around
+ * at its edges just like the cell matrix of Context does.
+ */
+public interface Engine {
+
+    int getRows();
+
+    int getColumns();
+
+    /**
+     * updates the dimension of the universe. All cells are cleared.
+     *
+     * @param rows    number of rows
+     * @param columns number of columns
+     */
+    void setDimension(int rows, int columns);
+
+    /**
+     * @param row the row of the designated cell
+     * @param col the column of the designated cell
+     * @return true if the designated cell is alive
+     */
+    boolean isAlive(int row, int col);
+
+    void setAlive(int row, int col, boolean alive);
+
+    /**
+     * brings many cells to life at once, as when a saved game is loaded a batch at a time.
+     * Engines write them straight into their state; the classic engine activates its tiles
+     * once per batch rather than once per cell.
+     *
+     * @param coordinates the row and the column of every cell, one after the other
+     * @param length      the number of coordinates used, twice the number of cells
+     */
+    default void setAlive(int[] coordinates, int length) {
+        for (int i = 0; i + 1 < length; i += 2)
+            setAlive(coordinates[i], coordinates[i + 1], true);
+    }
+
+    /**
+     * reads up to 64 cells of a row at once. Bit-packed engines read them as a word.
+     *
+     * @param row the row of the cells
+     * @param col the column of the first cell, a multiple of 64
+     * @return bit i is set if the cell in column col + i is alive; columns beyond the
+     * universe are never set
+     */
+    default long bits(int row, int col) {
+        long bits = 0;
+        for (int c = col, end = Math.min(col + 64, getColumns()); c < end; c++)
+            if (isAlive(row, c)) bits |= 1L << c;
+        return bits;
+    }
+
+    /**
+     * flips up to 64 cells of a row at once: a cell comes alive if it was dead and dies if
+     * it was alive. Bit-packed engines flip them as a word.
+     *
+     * @param row  the row of the cells
+     * @param col  the column of the first cell, a multiple of 64
+     * @param bits bit i is set if the cell in column col + i is to be flipped
+     */
+    default void flip(int row, int col, long bits) {
+        for (; bits != 0; bits &= bits - 1) {
+            int c = col + Long.numberOfTrailingZeros(bits);
+            setAlive(row, c, !isAlive(row, c));
+        }
+    }
+
+    /**
+     * performs a single iteration of the Game of Life.
+     */
+    void step();
+
+    /**
+     * advances the universe by the given number of generations.
+     *
+     * @param generations number of generations
+     */
+    default void step(long generations) {
+        for (long i = 0; i < generations; i++)
+            step();
+    }
+
+    /**
+     * @return the number of iterations performed since the engine was last resized.
+     */
+    long getGeneration();
+
+    /**
+     * @return the number of living cells; engines whose universe extends beyond the
+     * rows and columns count the living cells outside of them as well.
+     */
+    default long getPopulation() {
+        long population = 0;
+        for (int r = 0; r < getRows(); r++)
+            for (int c = 0; c < getColumns(); c++)
+                if (isAlive(r, c)) population++;
+        return population;
+    }
+
+    /**
+     * @return a Zobrist hash of the universe, which is equal for equal universes; see
+     * CycleDetector. Engines that know which cells change in a step update it as they go.
+     */
+    default long getHash() {
+        long hash = 0;
+        for (int r = 0; r < getRows(); r++)
+            for (int c = 0; c < getColumns(); c++)
+                if (isAlive(r, c)) hash ^= Zobrist.key(r, c);
+        return hash;
+    }
+
+    /**
+     * @return whether isAlive() shows earlier generations besides the current one, as the
+     * spacetime diagram of the elementary engine does. Such engines are stepped through
+     * every generation even once the universe cycles, rather than skipped ahead by whole
+     * periods; see Simulation.step().
+     */
+    default boolean showsHistory() {
+        return false;
+    }
+
+    /**
+     * @return the population, the bounding box and the churn of the current generation.
+     * Engines that don't keep count as the cells change scan the universe, and don't know
+     * the births and deaths.
+     */
+    default Statistics getStatistics() {
+        long population = 0;
+        int top = -1, left = -1, bottom = -1, right = -1;
+        for (int r = 0; r < getRows(); r++)
+            for (int c = 0; c < getColumns(); c++) {
+                if (!isAlive(r, c)) continue;
+                population++;
+                if (top < 0) top = r;
+                bottom = r;
+                if (left < 0 || c < left) left = c;
+                if (c > right) right = c;
+            }
+        return new Statistics(population, -1, -1, top, left, bottom, right, -1);
+    }
+
+    /**
+     * sets the flags of the tiles in which cells may have changed since the last invocation,
+     * whether by a step or because they were set, so that a Snapshot only copies those. The
+     * tiles are those of TileTracker. Engines that don't keep track set all of them.
+     *
+     * @param flags one flag per tile, row by row; flags that are set already stay set
+     */
+    default void collectChanged(boolean[] flags) {
+        Arrays.fill(flags, true);
+    }
+
+    void clear();
+
+    Rule getRule();
+
+    /**
+     * @param rule the rule applied from the next iteration on
+     * @throws IllegalArgumentException if the engine can't run the rule
+     */
+    void setRule(Rule rule);
+}
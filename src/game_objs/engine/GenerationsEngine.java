@@ -0,0 +1,186 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs rules of the Generations family, in which cells have more than two states (see
+ * Rule). The state of every cell is held in a single byte of a flat plane; the next state
+ * of a cell is looked up in a table indexed by its current state and the number of its
+ * living neighbours, so that the inner loop doesn't branch on the rule.
+ * <p>
+ * Life-like rules are run as well; they are simply Generations rules with two states.
+ */
+public class GenerationsEngine implements Engine {
+    int rows;
+    int columns;
+    byte[] current;
+    byte[] next;
+    byte[] transitions;
+    Rule rule = Rule.CONWAY;
+    WorkerPool workerPool;
+    private long generation;
+    private int slices;
+    private final IntConsumer stepSlice = slice -> stepRows(rows * slice / slices, rows * (slice + 1) / slices);
+
+    public GenerationsEngine(int rows, int columns) {
+        setDimension(rows, columns);
+        setRule(rule);
+    }
+
+    /**
+     * @param workerPool the pool among whose workers bands of rows are divided
+     */
+    public GenerationsEngine(int rows, int columns, WorkerPool workerPool) {
+        this(rows, columns);
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * @return 1 if the state is the living state, 0 otherwise. The byte is masked first, as
+     * the states from 128 on are negative.
+     */
+    static int living(byte state) {
+        return (((state & 0xFF) ^ 1) - 1) >>> 31;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public void setDimension(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        current = new byte[rows * columns];
+        next = new byte[rows * columns];
+        generation = 0;
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        return current[row * columns + col] == 1;
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        current[row * columns + col] = (byte) (alive ? 1 : 0);
+    }
+
+    /**
+     * @return 0 for dead cells, 1 for living cells and 2 or more for dying ones
+     */
+    public int getState(int row, int col) {
+        return current[row * columns + col] & 0xFF;
+    }
+
+    public void setState(int row, int col, int state) {
+        current[row * columns + col] = (byte) state;
+    }
+
+    @Override
+    public void step() {
+        slices = workerPool == null || (long) rows * columns < 1 << 16 ? 1 : workerPool.getParallelism();
+        if (slices == 1) stepRows(0, rows);
+        else workerPool.run(slices, stepSlice);
+        byte[] temp = current;
+        current = next;
+        next = temp;
+        generation++;
+    }
+
+    /**
+     * @param from first row, inclusive
+     * @param to   last row, exclusive
+     */
+    void stepRows(int from, int to) {
+        byte[] state = current, result = next, table = transitions;
+        for (int r = from; r < to; r++) {
+            int above = (r == 0 ? rows - 1 : r - 1) * columns;
+            int center = r * columns;
+            int below = (r == rows - 1 ? 0 : r + 1) * columns;
+            for (int c = 0; c < columns; c++) {
+                int left = c == 0 ? columns - 1 : c - 1;
+                int right = c == columns - 1 ? 0 : c + 1;
+                int count = living(state[above + left]) + living(state[above + c]) + living(state[above + right])
+                        + living(state[center + left]) + living(state[center + right])
+                        + living(state[below + left]) + living(state[below + c]) + living(state[below + right]);
+                result[center + c] = table[(state[center + c] & 0xFF) * 9 + count];
+            }
+        }
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the number of cells in the living state; dying cells aren't counted.
+     */
+    @Override
+    public long getPopulation() {
+        long population = 0;
+        for (byte state : current)
+            population += living(state);
+        return population;
+    }
+
+    /**
+     * @return a hash of the universe that takes the dying cells into account as well
+     */
+    @Override
+    public long getHash() {
+        long hash = 0;
+        for (int i = 0; i < current.length; i++)
+            if (current[i] != 0) hash ^= Zobrist.key(i / columns, i % columns, current[i] & 0xFF);
+        return hash;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(current, (byte) 0);
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule counts more than the eight surrounding cells
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (rule.getRadius() > 1)
+            throw new IllegalArgumentException("the Generations engine can't run Larger than Life rules: " + rule);
+        compile(rule);
+    }
+
+    /**
+     * compiles the rule into a table of the next state indexed by
+     * (state * (rule.getMaxNeighbours() + 1) + living neighbours).
+     *
+     * @throws IllegalArgumentException if the rule is one-dimensional
+     */
+    void compile(Rule rule) {
+        if (rule.isElementary())
+            throw new IllegalArgumentException("elementary rules need the elementary engine: " + rule);
+        int states = rule.getStates(), counts = rule.getMaxNeighbours() + 1;
+        byte[] transitions = new byte[states * counts];
+        for (int count = 0; count < counts; count++) {
+            transitions[count] = (byte) (rule.next(false, count) ? 1 : 0);
+            transitions[counts + count] = (byte) (rule.next(true, count) ? 1 : states > 2 ? 2 : 0);
+            for (int state = 2; state < states; state++)
+                transitions[state * counts + count] = (byte) (state + 1 == states ? 0 : state + 1);
+        }
+        this.transitions = transitions;
+        this.rule = rule;
+    }
+}
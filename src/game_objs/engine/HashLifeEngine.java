@@ -0,0 +1,594 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An implementation of Gosper's HashLife. The universe is a quadtree whose nodes are
+ * canonicalized so that identical regions share a single node; the result of advancing
+ * a node is memoized on the node itself, so that a pattern made of repeating parts (glider
+ * guns, for instance) is only ever computed once per part and per time step.
+ * <p>
+ * Unlike the other engines the universe is an unbounded plane. The rows and columns of
+ * the engine describe the window onto the plane that is exposed through isAlive(), with
+ * row 0 and column 0 at the origin. Cells that leave the window keep on living outside of it.
+ */
+public class HashLifeEngine implements Engine {
+    private static final int MAX_NODES = 1 << 22;
+    //the level of the largest root, whose corners still lie within a long of the origin.
+    private static final int MAX_LEVEL = 63;
+    private static final Node OFF = new Node(0);
+    private static final Node ON = new Node(1);
+
+    private HashMap<Node, Node> nodes;
+    private Node[] empty;
+    private Node root;
+    private int rows;
+    private int columns;
+    private long generation;
+    private long[][] window;
+    private boolean windowInvalidated;
+    private Rule rule = Rule.CONWAY;
+
+    public HashLifeEngine(int rows, int columns) {
+        nodes = new HashMap<>();
+        empty = new Node[64];
+        empty[0] = OFF;
+        setDimension(rows, columns);
+    }
+
+    /**
+     * @return the canonical node with the given quadrants.
+     */
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        Node node = new Node(nw, ne, sw, se);
+        Node canonical = nodes.putIfAbsent(node, node);
+        return canonical == null ? node : canonical;
+    }
+
+    private Node empty(int level) {
+        if (empty[level] == null) {
+            Node quadrant = empty(level - 1);
+            empty[level] = join(quadrant, quadrant, quadrant, quadrant);
+        }
+        return empty[level];
+    }
+
+    /**
+     * @return a node one level higher with the given node at its center.
+     */
+    private Node expand(Node node) {
+        Node border = empty(node.level - 1);
+        return join(join(border, border, border, node.nw),
+                join(border, border, node.ne, border),
+                join(border, node.sw, border, border),
+                join(node.se, border, border, border));
+    }
+
+    /**
+     * @return the node one level lower at the center of the given node.
+     */
+    private Node center(Node node) {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    /**
+     * computes the center of the node advanced by 2^j generations, where j is clamped
+     * to level - 2, the largest step for which the outcome is determined by the node alone.
+     *
+     * @param node a node of level 2 or higher
+     * @param j    log2 of the number of generations to advance
+     * @return a node one level lower than the given one
+     */
+    private Node successor(Node node, int j) {
+        j = Math.min(j, node.level - 2);
+        if (node.population == 0) return empty(node.level - 1);
+        if (node.successors != null && node.successors[j] != null) return node.successors[j];
+
+        Node result;
+        if (node.level == 2) {
+            result = advanceLeaf(node);
+        } else {
+            Node nw = node.nw, ne = node.ne, sw = node.sw, se = node.se;
+            Node c1 = successor(nw, j);
+            Node c2 = successor(join(nw.ne, ne.nw, nw.se, ne.sw), j);
+            Node c3 = successor(ne, j);
+            Node c4 = successor(join(nw.sw, nw.se, sw.nw, sw.ne), j);
+            Node c5 = successor(center(node), j);
+            Node c6 = successor(join(ne.sw, ne.se, se.nw, se.ne), j);
+            Node c7 = successor(sw, j);
+            Node c8 = successor(join(sw.ne, se.nw, sw.se, se.sw), j);
+            Node c9 = successor(se, j);
+            if (j < node.level - 2) {
+                result = join(join(c1.se, c2.sw, c4.ne, c5.nw),
+                        join(c2.se, c3.sw, c5.ne, c6.nw),
+                        join(c4.se, c5.sw, c7.ne, c8.nw),
+                        join(c5.se, c6.sw, c8.ne, c9.nw));
+            } else {
+                result = join(successor(join(c1, c2, c4, c5), j),
+                        successor(join(c2, c3, c5, c6), j),
+                        successor(join(c4, c5, c7, c8), j),
+                        successor(join(c5, c6, c8, c9), j));
+            }
+        }
+        if (node.successors == null) node.successors = new Node[node.level - 1];
+        node.successors[j] = result;
+        return result;
+    }
+
+    /**
+     * advances the 2x2 center of a 4x4 node by a single generation.
+     */
+    private Node advanceLeaf(Node node) {
+        int bits = 0; //bit (r * 4 + c) holds the cell at row r and column c
+        for (int r = 0; r < 4; r++)
+            for (int c = 0; c < 4; c++)
+                if (getCell(node, r, c))
+                    bits |= 1 << (r * 4 + c);
+        Node[] center = new Node[4];
+        for (int i = 0; i < 4; i++) {
+            int row = 1 + i / 2, col = 1 + i % 2, count = 0;
+            for (int r = row - 1; r <= row + 1; r++)
+                for (int c = col - 1; c <= col + 1; c++)
+                    if ((r != row || c != col) && (bits >>> (r * 4 + c) & 1) != 0)
+                        count++;
+            center[i] = rule.next((bits >>> (row * 4 + col) & 1) != 0, count) ? ON : OFF;
+        }
+        return join(center[0], center[1], center[2], center[3]);
+    }
+
+    /**
+     * @param row the row relative to the top left corner of the node
+     * @param col the column relative to the top left corner of the node
+     */
+    private static boolean getCell(Node node, int row, int col) {
+        while (node.level > 0) {
+            int half = 1 << (node.level - 1);
+            if (row < half) node = col < half ? node.nw : node.ne;
+            else node = col < half ? node.sw : node.se;
+            row &= half - 1;
+            col &= half - 1;
+        }
+        return node == ON;
+    }
+
+    private Node setCell(Node node, long row, long col, boolean alive) {
+        if (node.level == 0) return alive ? ON : OFF;
+        long half = 1L << (node.level - 1);
+        long r = row & (half - 1), c = col & (half - 1);
+        if (row < half) {
+            if (col < half) return join(setCell(node.nw, r, c, alive), node.ne, node.sw, node.se);
+            return join(node.nw, setCell(node.ne, r, c, alive), node.sw, node.se);
+        }
+        if (col < half) return join(node.nw, node.ne, setCell(node.sw, r, c, alive), node.se);
+        return join(node.nw, node.ne, node.sw, setCell(node.se, r, c, alive));
+    }
+
+    /**
+     * @return the offset of the top left corner of the root from the origin.
+     */
+    private long rootOffset() {
+        return 1L << (root.level - 1);
+    }
+
+    private boolean isInsideRoot(long row, long col) {
+        return row >= -rootOffset() && row < rootOffset() && col >= -rootOffset() && col < rootOffset();
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public void setDimension(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        window = new long[rows][(columns + 63) >>> 6];
+        generation = 0;
+        clear();
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        if (windowInvalidated) renderWindow();
+        return (window[row][col >>> 6] >>> col & 1L) != 0;
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        if (!alive && !isInsideRoot(row, col)) return;
+        while (!isInsideRoot(row, col))
+            root = expand(root);
+        root = setCell(root, row + rootOffset(), col + rootOffset(), alive);
+        //the window is kept as it is, so that setting many cells doesn't render it again and again.
+        if (alive) window[row][col >>> 6] |= 1L << col;
+        else window[row][col >>> 6] &= ~(1L << col);
+    }
+
+    @Override
+    public long bits(int row, int col) {
+        if (windowInvalidated) renderWindow();
+        return window[row][col >>> 6];
+    }
+
+    @Override
+    public void step() {
+        step(1);
+    }
+
+    /**
+     * advances the universe by the given number of generations, one power of two at a time.
+     * The root grows to no more than MAX_LEVEL, so that the plane ends 2^62 cells away from
+     * the origin.
+     *
+     * @param generations number of generations, less than 2^61
+     * @throws IllegalArgumentException if generations is too large for the plane
+     * @throws IllegalStateException    if the universe would grow beyond the plane; the
+     *                                  powers of two computed until then are kept
+     */
+    @Override
+    public void step(long generations) {
+        if (generations >= 1L << (MAX_LEVEL - 2))
+            throw new IllegalArgumentException("HashLife can't advance by more than 2^61 - 1 generations at once: "
+                    + generations);
+        for (int j = 0; j < MAX_LEVEL - 2; j++) {
+            if ((generations >>> j & 1) == 0) continue;
+            //make sure that nothing can escape the center of the root within 2^j generations.
+            while (root.level < j + 3 || center(center(root)).population != root.population) {
+                if (root.level == MAX_LEVEL) {
+                    windowInvalidated = true;
+                    throw new IllegalStateException("the universe has grown beyond the plane of HashLife at generation "
+                            + generation);
+                }
+                root = expand(root);
+            }
+            root = successor(root, j);
+            generation += 1L << j;
+            collectGarbage();
+        }
+        windowInvalidated = true;
+    }
+
+    /**
+     * drops the memoized results once the table of canonical nodes grows too large by
+     * re-canonicalizing the current root into a fresh table.
+     */
+    private void collectGarbage() {
+        if (nodes.size() < MAX_NODES) return;
+        flush();
+    }
+
+    /**
+     * re-canonicalizes the root into a fresh table, dropping every memoized result.
+     */
+    private void flush() {
+        nodes = new HashMap<>();
+        Arrays.fill(empty, 1, empty.length, null);
+        root = copy(root, new HashMap<>());
+    }
+
+    private Node copy(Node node, HashMap<Node, Node> copied) {
+        if (node.level == 0) return node;
+        Node copy = copied.get(node);
+        if (copy == null) {
+            copy = join(copy(node.nw, copied), copy(node.ne, copied), copy(node.sw, copied), copy(node.se, copied));
+            copied.put(node, copy);
+        }
+        return copy;
+    }
+
+    /**
+     * renders the part of the plane that is covered by the window into a bitmap so
+     * that isAlive() doesn't have to descend the quadtree for every single cell.
+     */
+    private void renderWindow() {
+        for (long[] row : window)
+            Arrays.fill(row, 0);
+        render(root, -rootOffset(), -rootOffset());
+        windowInvalidated = false;
+    }
+
+    private void render(Node node, long top, long left) {
+        //the last row and column of the node, which fit into a long even for a root of MAX_LEVEL.
+        long last = (1L << node.level) - 1;
+        if (node.population == 0 || top >= rows || left >= columns || top + last < 0 || left + last < 0)
+            return;
+        if (node.level == 0) {
+            window[(int) top][(int) left >>> 6] |= 1L << left;
+            return;
+        }
+        long half = 1L << (node.level - 1);
+        render(node.nw, top, left);
+        render(node.ne, top, left + half);
+        render(node.sw, top + half, left);
+        render(node.se, top + half, left + half);
+    }
+
+    /**
+     * replaces the plane by a macrocell, whose nodes are joined one by one in the order in
+     * which they appear. The root ends up where the macrocell places it: with its top left
+     * corner at the origin, or centered on it as the root of the plane.
+     */
+    public void load(Macrocell macrocell) {
+        Node[] built = new Node[macrocell.getCount()];
+        Node[] blocks = new Node[1 << 16];
+        for (int i = 1; i < built.length; i++) {
+            int level = macrocell.getLevel(i);
+            if (level == 3) {
+                built[i] = leaf(macrocell.getLeaf(i), blocks);
+                continue;
+            }
+            Node[] quadrant = new Node[4];
+            for (int q = 0; q < 4; q++) {
+                int node = macrocell.getQuadrant(i, q);
+                quadrant[q] = node == 0 ? empty(level - 1) : built[node];
+            }
+            built[i] = join(quadrant[0], quadrant[1], quadrant[2], quadrant[3]);
+        }
+        Node pattern = built[macrocell.getRoot()];
+        if (macrocell.getTop() != 0) root = pattern;
+        else {
+            Node border = empty(pattern.level);
+            root = join(border, border, border, pattern);
+        }
+        windowInvalidated = true;
+    }
+
+    /**
+     * replaces the plane by the universe of another engine, building the quadtree bottom up
+     * from the words of its rows rather than a cell at a time. The universe ends up with its
+     * top left corner at the origin.
+     */
+    public void load(Engine source) {
+        int level = 3;
+        while (1L << level < Math.max(source.getRows(), source.getColumns()))
+            level++;
+        Node pattern = build(source, level, 0, 0, new Node[1 << 16]);
+        Node border = empty(level);
+        root = join(border, border, border, pattern);
+        windowInvalidated = true;
+    }
+
+    /**
+     * flips the cells that are alive in another engine, whose top left corner is placed at
+     * the origin: they come alive if they were dead and die if they were alive. The quadtree
+     * of the other engine is built bottom up as by load(), and then combined with the plane
+     * a node at a time, so that a whole soup is laid down at once.
+     */
+    public void flip(Engine source) {
+        int level = 3;
+        while (1L << level < Math.max(source.getRows(), source.getColumns()))
+            level++;
+        Node pattern = build(source, level, 0, 0, new Node[1 << 16]);
+        if (pattern.population == 0) return;
+        while (root.level <= level)
+            root = expand(root);
+        //the pattern lies at the top left corner of the south-east quadrant of the root.
+        Node quadrant = pattern;
+        while (quadrant.level < root.level - 1)
+            quadrant = join(quadrant, empty(quadrant.level), empty(quadrant.level), empty(quadrant.level));
+        Node border = empty(root.level - 1);
+        root = xor(root, join(border, border, border, quadrant));
+        windowInvalidated = true;
+    }
+
+    /**
+     * @return the node of the same level whose cells are alive in exactly one of the two
+     */
+    private Node xor(Node a, Node b) {
+        if (b.population == 0) return a;
+        if (a.population == 0) return b;
+        if (a.level == 0) return OFF;
+        return join(xor(a.nw, b.nw), xor(a.ne, b.ne), xor(a.sw, b.sw), xor(a.se, b.se));
+    }
+
+    private Node build(Engine source, int level, int top, int left, Node[] blocks) {
+        if (top >= source.getRows() || left >= source.getColumns()) return empty(level);
+        if (level == 3) {
+            long bits = 0;
+            for (int r = 0; r < 8 && top + r < source.getRows(); r++)
+                bits |= (source.bits(top + r, left & ~63) >>> (left & 63) & 0xFF) << (r * 8);
+            return leaf(bits, blocks);
+        }
+        int half = 1 << (level - 1);
+        return join(build(source, level - 1, top, left, blocks), build(source, level - 1, top, left + half, blocks),
+                build(source, level - 1, top + half, left, blocks), build(source, level - 1, top + half, left + half, blocks));
+    }
+
+    /**
+     * @param bits   the cells of an 8 x 8 leaf, bit (row * 8 + col) for the cell at row and col
+     * @param blocks the nodes of 4 x 4 cells built so far, by their cells; they stay canonical
+     *               as long as the table of nodes isn't flushed
+     * @return the node of level 3
+     */
+    private Node leaf(long bits, Node[] blocks) {
+        if (bits == 0) return empty(3);
+        Node[] quadrant = new Node[4];
+        for (int q = 0; q < 4; q++) {
+            int block = 0, shift = (q >= 2 ? 32 : 0) + (q % 2 == 1 ? 4 : 0);
+            for (int r = 0; r < 4; r++)
+                block |= (int) (bits >>> (shift + r * 8) & 0xF) << (r * 4);
+            if (blocks[block] == null) {
+                Node[] pairs = new Node[4];
+                for (int p = 0; p < 4; p++) {
+                    int bit = (p >= 2 ? 8 : 0) + (p % 2 == 1 ? 2 : 0);
+                    pairs[p] = join(cell(block, bit), cell(block, bit + 1), cell(block, bit + 4), cell(block, bit + 5));
+                }
+                blocks[block] = join(pairs[0], pairs[1], pairs[2], pairs[3]);
+            }
+            quadrant[q] = blocks[block];
+        }
+        return join(quadrant[0], quadrant[1], quadrant[2], quadrant[3]);
+    }
+
+    private static Node cell(int block, int bit) {
+        return (block >>> bit & 1) != 0 ? ON : OFF;
+    }
+
+    /**
+     * turns the plane into a macrocell. If nothing lives above or to the left of the origin,
+     * only the quadrant of the root below and to the right of it is written; otherwise the
+     * whole root is, along with its offset, so that the pattern loads back into the same
+     * place either way.
+     *
+     * @throws IllegalStateException if cells lie beyond the largest root a macrocell holds
+     */
+    public Macrocell toMacrocell() {
+        Node node = root;
+        while (node.level < 4)
+            node = expand(node);
+        //a macrocell holds roots up to a level below MAX_LEVEL, centered as well.
+        if (node.level == MAX_LEVEL) {
+            if (center(node).population != node.population)
+                throw new IllegalStateException("the universe is too large for a macrocell");
+            node = center(node);
+        }
+        Macrocell macrocell = new Macrocell(rule.toString());
+        if (node.nw.population + node.ne.population + node.sw.population == 0) node = node.se;
+        else macrocell.setOffset(-(1L << (node.level - 1)), -(1L << (node.level - 1)));
+        add(macrocell, node, new HashMap<>());
+        return macrocell;
+    }
+
+    /**
+     * @return the number of the node in the macrocell, 0 if it is empty
+     */
+    private int add(Macrocell macrocell, Node node, HashMap<Node, Integer> added) {
+        if (node.population == 0) return 0;
+        Integer number = added.get(node);
+        if (number != null) return number;
+        if (node.level == 3) {
+            long bits = 0;
+            for (int r = 0; r < 8; r++)
+                for (int c = 0; c < 8; c++)
+                    if (getCell(node, r, c)) bits |= 1L << (r * 8 + c);
+            number = macrocell.add(bits);
+        } else {
+            int nw = add(macrocell, node.nw, added), ne = add(macrocell, node.ne, added);
+            int sw = add(macrocell, node.sw, added), se = add(macrocell, node.se, added);
+            number = macrocell.add(node.level, nw, ne, sw, se);
+        }
+        added.put(node, number);
+        return number;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the number of living cells on the entire plane.
+     */
+    @Override
+    public long getPopulation() {
+        return root.population;
+    }
+
+    /**
+     * @return a hash of the entire plane rather than of the window, since cells that left
+     * the window may still come back. It is computed bottom up from the hashes of the
+     * quadrants, once for each distinct node.
+     */
+    @Override
+    public long getHash() {
+        return hash(root, new HashMap<>()) ^ root.level;
+    }
+
+    private long hash(Node node, HashMap<Node, Long> hashes) {
+        if (node.level == 0) return node.population;
+        if (node.population == 0) return node.level;
+        Long hash = hashes.get(node);
+        if (hash == null) {
+            long h = hash(node.nw, hashes);
+            h = h * 0x9E3779B97F4A7C15L + hash(node.ne, hashes);
+            h = h * 0x9E3779B97F4A7C15L + hash(node.sw, hashes);
+            h = h * 0x9E3779B97F4A7C15L + hash(node.se, hashes);
+            h = (h ^ h >>> 30) * 0xBF58476D1CE4E5B9L;
+            h = (h ^ h >>> 27) * 0x94D049BB133111EBL;
+            hash = h ^ h >>> 31;
+            hashes.put(node, hash);
+        }
+        return hash;
+    }
+
+    @Override
+    public void clear() {
+        root = empty(3);
+        windowInvalidated = true;
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * the memoized results depend on the rule, so they are dropped.
+     *
+     * @throws IllegalArgumentException if the rule gives birth to cells without neighbours
+     *                                  or isn't life-like
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (!rule.isLifeLike())
+            throw new IllegalArgumentException("HashLife can only run life-like rules: " + rule);
+        if (rule.isBirthFromNothing())
+            throw new IllegalArgumentException("HashLife can't run B0 rules: " + rule);
+        this.rule = rule;
+        flush();
+    }
+
+    private static class Node {
+        private final Node nw, ne, sw, se;
+        private final int level;
+        private final long population;
+        private final int hash;
+        private Node[] successors;
+
+        /**
+         * constructs a leaf.
+         */
+        private Node(int population) {
+            nw = ne = sw = se = null;
+            level = 0;
+            this.population = population;
+            hash = population;
+        }
+
+        private Node(Node nw, Node ne, Node sw, Node se) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            level = nw.level + 1;
+            population = nw.population + ne.population + sw.population + se.population;
+            int h = System.identityHashCode(nw);
+            h = h * 31 + System.identityHashCode(ne);
+            h = h * 31 + System.identityHashCode(sw);
+            h = h * 31 + System.identityHashCode(se);
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * the quadrants of canonical nodes are canonical themselves, so they can be compared by reference.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Node)) return false;
+            Node node = (Node) obj;
+            return nw == node.nw && ne == node.ne && sw == node.sw && se == node.se;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package game_objs.engine;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Runs Larger than Life rules, which count the living cells within a range R of up to
+ * about 10. Rather than visiting all (2R + 1)^2 cells of every neighbourhood, each
+ * generation builds a summed-area table of the living cells, in which every entry holds
+ * the number of living cells above and to the left of it; the count of any square is then
+ * read from its four corners, whatever the range.
+ * <p>
+ * The table covers the grid padded by R cells on every side with the cells from the
+ * opposite edge, so that the neighbourhoods wrap around without any special case. Both
+ * passes that build it, as well as the next generation itself, are divided among the
+ * worker pool.
+ */
+public class LargerThanLifeEngine extends GenerationsEngine {
+    private int[] sums;
+    private int width;
+    private int paddedRows;
+    private int paddedColumns;
+    //the row and column of the grid that each row and column of the padded grid holds.
+    private int[] rowSource;
+    private int[] colSource;
+    private int bands;
+    private final IntConsumer sumRows = band -> sumRows(paddedRows * band / bands, paddedRows * (band + 1) / bands);
+    private final IntConsumer sumColumns = band -> sumColumns(1 + paddedColumns * band / bands, 1 + paddedColumns * (band + 1) / bands);
+
+    public LargerThanLifeEngine(int rows, int columns) {
+        super(rows, columns);
+    }
+
+    public LargerThanLifeEngine(int rows, int columns, WorkerPool workerPool) {
+        super(rows, columns, workerPool);
+    }
+
+    /**
+     * allocates the summed-area table for the current dimension and range.
+     */
+    private void allocate() {
+        int radius = rule.getRadius();
+        paddedRows = rows + 2 * radius;
+        paddedColumns = columns + 2 * radius;
+        width = paddedColumns + 1;
+        sums = new int[(paddedRows + 1) * width];
+        rowSource = new int[paddedRows];
+        colSource = new int[paddedColumns];
+        for (int i = 0; i < paddedRows; i++)
+            rowSource[i] = Math.floorMod(i - radius, rows) * columns;
+        for (int j = 0; j < paddedColumns; j++)
+            colSource[j] = Math.floorMod(j - radius, columns);
+    }
+
+    @Override
+    public void setDimension(int rows, int columns) {
+        super.setDimension(rows, columns);
+        allocate();
+    }
+
+    @Override
+    public void step() {
+        bands = workerPool == null || (long) rows * columns < 1 << 14 ? 1 : workerPool.getParallelism();
+        run(sumRows);
+        run(sumColumns);
+        super.step();
+    }
+
+    private void run(IntConsumer task) {
+        if (bands == 1) task.accept(0);
+        else workerPool.run(bands, task);
+    }
+
+    /**
+     * first pass: the running count of living cells along each row of the padded grid.
+     */
+    private void sumRows(int from, int to) {
+        byte[] state = current;
+        for (int i = from; i < to; i++) {
+            int source = rowSource[i], offset = (i + 1) * width + 1, sum = 0;
+            for (int j = 0; j < paddedColumns; j++) {
+                sum += living(state[source + colSource[j]]);
+                sums[offset + j] = sum;
+            }
+        }
+    }
+
+    /**
+     * second pass: accumulates the row sums down each column. The columns are
+     * independent, so a band of them is walked row by row to keep the reads sequential.
+     */
+    private void sumColumns(int from, int to) {
+        for (int i = 2; i <= paddedRows; i++) {
+            int offset = i * width;
+            for (int j = from; j < to; j++)
+                sums[offset + j] += sums[offset - width + j];
+        }
+    }
+
+    @Override
+    void stepRows(int from, int to) {
+        int side = 2 * rule.getRadius() + 1, counts = rule.getMaxNeighbours() + 1;
+        boolean middle = rule.isMiddleIncluded();
+        byte[] state = current, result = next, table = transitions;
+        for (int r = from; r < to; r++) {
+            int top = r * width, bottom = (r + side) * width;
+            for (int c = 0; c < columns; c++) {
+                byte cell = state[r * columns + c];
+                int count = sums[bottom + c + side] - sums[top + c + side] - sums[bottom + c] + sums[top + c];
+                if (!middle) count -= living(cell);
+                result[r * columns + c] = table[(cell & 0xFF) * counts + count];
+            }
+        }
+    }
+
+    /**
+     * accepts rules of any range, including the life-like and Generations rules.
+     */
+    @Override
+    public void setRule(Rule rule) {
+        compile(rule);
+        allocate();
+    }
+}
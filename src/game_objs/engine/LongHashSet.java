@@ -0,0 +1,116 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash set of primitive longs that doesn't box its keys. EMPTY marks an
+ * empty slot of the table; since every long may be a key, the set keeps track of whether
+ * it holds EMPTY itself with a flag of its own.
+ */
+class LongHashSet {
+    static final long EMPTY = Long.MIN_VALUE;
+    private long[] keys;
+    private boolean containsEmpty;
+    private int size;
+    private int mask;
+
+    LongHashSet() {
+        this(16);
+    }
+
+    LongHashSet(int capacity) {
+        keys = new long[Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+    }
+
+    static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ key >>> 32);
+    }
+
+    boolean contains(long key) {
+        if (key == EMPTY) return containsEmpty;
+        for (int i = hash(key) & mask; ; i = i + 1 & mask) {
+            if (keys[i] == key) return true;
+            if (keys[i] == EMPTY) return false;
+        }
+    }
+
+    /**
+     * @return true if the key wasn't in the set before
+     */
+    boolean add(long key) {
+        if (key == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int i = hash(key) & mask;
+        for (; keys[i] != EMPTY; i = i + 1 & mask)
+            if (keys[i] == key) return false;
+        keys[i] = key;
+        if (++size > keys.length >>> 1) rehash(keys.length << 1);
+        return true;
+    }
+
+    /**
+     * @return true if the key was in the set
+     */
+    boolean remove(long key) {
+        if (key == EMPTY) {
+            if (!containsEmpty) return false;
+            containsEmpty = false;
+            size--;
+            return true;
+        }
+        int i = hash(key) & mask;
+        for (; keys[i] != key; i = i + 1 & mask)
+            if (keys[i] == EMPTY) return false;
+        //shift the following keys of the cluster back so that no probe sequence is broken.
+        for (int j = i + 1 & mask; keys[j] != EMPTY; j = j + 1 & mask) {
+            int home = hash(keys[j]) & mask;
+            if ((j - home & mask) >= (j - i & mask)) {
+                keys[i] = keys[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        size--;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        for (long key : old) {
+            if (key == EMPTY) continue;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY) i = i + 1 & mask;
+            keys[i] = key;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, EMPTY);
+        containsEmpty = false;
+        size = 0;
+    }
+
+    /**
+     * @return the underlying table, in which empty slots hold EMPTY. Used for iterating
+     * over the keys without allocating an iterator; EMPTY itself is never held in it, see
+     * contains().
+     */
+    long[] table() {
+        return keys;
+    }
+}
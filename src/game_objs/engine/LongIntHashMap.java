@@ -0,0 +1,98 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive longs to ints. It only supports adding
+ * to the value associated with a key, which is all that counting neighbours takes.
+ * LongHashSet.EMPTY marks an empty slot of the table; its own value is kept aside, see
+ * containsEmpty().
+ */
+class LongIntHashMap {
+    private long[] keys;
+    private int[] values;
+    private boolean containsEmpty;
+    private int emptyValue;
+    private int size;
+    private int mask;
+
+    LongIntHashMap() {
+        keys = new long[16];
+        values = new int[16];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = keys.length - 1;
+    }
+
+    /**
+     * adds the given amount to the value associated with the key; keys that
+     * are not yet in the map start off at 0.
+     */
+    void add(long key, int amount) {
+        if (key == LongHashSet.EMPTY) {
+            emptyValue = containsEmpty ? emptyValue + amount : amount;
+            containsEmpty = true;
+            return;
+        }
+        int i = LongHashSet.hash(key) & mask;
+        for (; keys[i] != LongHashSet.EMPTY; i = i + 1 & mask) {
+            if (keys[i] == key) {
+                values[i] += amount;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = amount;
+        if (++size > keys.length >>> 1) rehash(keys.length << 1);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        mask = capacity - 1;
+        for (int q = 0; q < oldKeys.length; q++) {
+            if (oldKeys[q] == LongHashSet.EMPTY) continue;
+            int i = LongHashSet.hash(oldKeys[q]) & mask;
+            while (keys[i] != LongHashSet.EMPTY) i = i + 1 & mask;
+            keys[i] = oldKeys[q];
+            values[i] = oldValues[q];
+        }
+    }
+
+    void clear() {
+        containsEmpty = false;
+        if (size == 0) return;
+        Arrays.fill(keys, LongHashSet.EMPTY);
+        size = 0;
+    }
+
+    /**
+     * @return whether LongHashSet.EMPTY is a key, which keyTable() never holds
+     */
+    boolean containsEmpty() {
+        return containsEmpty;
+    }
+
+    /**
+     * @return the value associated with LongHashSet.EMPTY, if it is a key
+     */
+    int getEmptyValue() {
+        return emptyValue;
+    }
+
+    /**
+     * @return the underlying keys, in which empty slots hold LongHashSet.EMPTY.
+     */
+    long[] keyTable() {
+        return keys;
+    }
+
+    /**
+     * @return the values, index by index in step with keyTable().
+     */
+    int[] valueTable() {
+        return values;
+    }
+}
@@ -0,0 +1,71 @@
+package game_objs.engine;
+
+/**
+ * Treats the grid as blocks of 2x2 cells. The 4x4 neighbourhood around a block is read
+ * out of the bit-packed rows as a 16 bit index into a precomputed table of 65,536
+ * entries, which holds the next generation of the block; the rule is never evaluated
+ * for an individual cell.
+ * <p>
+ * The table is compiled from the rule; see Rule.getBlockTable().
+ */
+public class LookupTableEngine extends BitPackedEngine {
+
+    public LookupTableEngine(int rows, int columns) {
+        super(rows, columns);
+    }
+
+    public LookupTableEngine(int rows, int columns, WorkerPool workerPool) {
+        super(rows, columns, workerPool);
+    }
+
+    /**
+     * @return the 4 cells of the row from col - 1 to col + 2, wrapped around if necessary
+     */
+    private int window(long[] row, int col) {
+        int first = col - 1;
+        if (first >= 0 && col + 2 < columns) {
+            int w = first >>> 6, offset = first & 63;
+            long bits = row[w] >>> offset;
+            if (offset > 60) bits |= row[w + 1] << (64 - offset);
+            return (int) bits & 0xF;
+        }
+        int bits = 0;
+        for (int i = 0; i < 4; i++) {
+            int c = first + i;
+            c = c < 0 ? c + columns : c >= columns ? c - columns : c;
+            bits |= (int) (row[c >>> 6] >>> c & 1L) << i;
+        }
+        return bits;
+    }
+
+    /**
+     * computes the next generation of a band of rows two at a time. The band
+     * always starts on an even row.
+     */
+    @Override
+    void stepRows(int from, int to) {
+        int words = wordsPerRow(columns);
+        long lastWordMask = -1L >>> (63 - ((columns - 1) & 63));
+        byte[] table = rule.getBlockTable();
+        for (int r = from; r < to; r += 2) {
+            long[] a = current[r == 0 ? rows - 1 : r - 1];
+            long[] b = current[r];
+            long[] c = current[(r + 1) % rows];
+            long[] d = current[(r + 2) % rows];
+            for (int w = 0; w < words; w++) {
+                long top = 0, bottom = 0;
+                for (int k = 0, col = w << 6; k < 64 && col < columns; k += 2, col += 2) {
+                    int block = table[window(a, col) | window(b, col) << 4 | window(c, col) << 8 | window(d, col) << 12];
+                    top |= (long) (block & 3) << k;
+                    bottom |= (long) (block >>> 2) << k;
+                }
+                if (w == words - 1) {
+                    top &= lastWordMask;
+                    bottom &= lastWordMask;
+                }
+                next[r][w] = top;
+                if (r + 1 < rows) next[r + 1][w] = bottom;
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package game_objs.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * A pattern in Golly's Macrocell format, which stores the quadtree of HashLife rather than
+ * the cells, so that patterns of astronomical size take a few kilobytes:
+ * <pre>
+ * [M2] (golly 2.0)
+ * #R B3/S23
+ * .**$*$                  a leaf: 8 x 8 cells, "*" alive, "." dead and "$" ending a row
+ * 4 1 0 0 1               a node: its level, then its nw, ne, sw and se quadrants
+ * </pre>
+ * Nodes are numbered from 1 in the order in which they appear, 0 stands for an empty
+ * quadrant, and the last node is the root. The table of nodes is kept as it is read, so
+ * that the HashLife engine can turn it into its quadtree node by node; see
+ * HashLifeEngine.load(). Other engines receive its cells; see cells().
+ * <p>
+ * The top left corner of the root lies at row 0 and column 0, unless a line "#O row column"
+ * says otherwise. It is written for patterns that reach above or to the left of the origin,
+ * whose root is centered on it instead; those are the only two places a root can take.
+ */
+public final class Macrocell {
+    private static final String HEADER = "[M2]";
+    private static final int BATCH = 2 << 12;
+
+    private String rule;
+    //the row and the column of the top left corner of the root.
+    private long top;
+    private long left;
+    private int count = 1;
+    private int[] levels = new int[64];
+    //the cells of a leaf, bit (row * 8 + col) for the cell at row and col.
+    private long[] leaves = new long[64];
+    private int[] quadrants = new int[256];
+
+    Macrocell(String rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * @return true if the file starts like a macrocell
+     */
+    public static boolean isMacrocell(File file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line = reader.readLine();
+            return line != null && line.startsWith(HEADER);
+        }
+    }
+
+    /**
+     * reads the table of nodes. The file is read a line at a time, and every node takes a
+     * few ints in memory.
+     *
+     * @throws IOException if the file can't be read or isn't a two-state macrocell
+     */
+    public static Macrocell read(File file) throws IOException {
+        Macrocell macrocell = new Macrocell(null);
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith(HEADER))
+                throw new IOException("not a macrocell: " + file.getName());
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                char first = line.charAt(0);
+                if (first == '#') {
+                    if (line.startsWith("#R")) macrocell.rule = line.substring(2).trim();
+                    else if (line.startsWith("#O")) macrocell.parseOffset(line);
+                } else if (first == '.' || first == '*' || first == '$') {
+                    macrocell.add(parseLeaf(line));
+                } else {
+                    macrocell.parseNode(line);
+                }
+            }
+        }
+        if (macrocell.count == 1)
+            throw new IOException("empty macrocell: " + file.getName());
+        long centered = -(1L << (macrocell.levels[macrocell.getRoot()] - 1));
+        if (macrocell.top != macrocell.left || macrocell.top != 0 && macrocell.top != centered)
+            throw new IOException("the root must lie at the origin or be centered on it: " + file.getName());
+        return macrocell;
+    }
+
+    private void parseOffset(String line) throws IOException {
+        String[] values = line.substring(2).trim().split("\\s+");
+        try {
+            if (values.length != 2) throw new NumberFormatException();
+            top = Long.parseLong(values[0]);
+            left = Long.parseLong(values[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid offset: " + line);
+        }
+    }
+
+    private static long parseLeaf(String line) throws IOException {
+        long bits = 0;
+        int row = 0, col = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '$') {
+                row++;
+                col = 0;
+            } else if (c == '*' || c == '.') {
+                if (row > 7 || col > 7) throw new IOException("leaf larger than 8 x 8: " + line);
+                if (c == '*') bits |= 1L << (row * 8 + col);
+                col++;
+            }
+        }
+        return bits;
+    }
+
+    private void parseNode(String line) throws IOException {
+        String[] values = line.trim().split("\\s+");
+        try {
+            int level = Integer.parseInt(values[0]);
+            if (level == 1)
+                throw new IOException("multi-state macrocells are not supported");
+            if (values.length != 5 || level <= 3 || level > 62)
+                throw new IOException("invalid node: " + line);
+            int[] quadrant = new int[4];
+            for (int q = 0; q < 4; q++) {
+                quadrant[q] = Integer.parseInt(values[q + 1]);
+                if (quadrant[q] < 0 || quadrant[q] >= count || quadrant[q] > 0 && levels[quadrant[q]] != level - 1)
+                    throw new IOException("invalid node: " + line);
+            }
+            add(level, quadrant[0], quadrant[1], quadrant[2], quadrant[3]);
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid node: " + line);
+        }
+    }
+
+    /**
+     * adds a leaf of 8 x 8 cells.
+     *
+     * @return the number of the node
+     */
+    int add(long leaf) {
+        grow();
+        levels[count] = 3;
+        leaves[count] = leaf;
+        return count++;
+    }
+
+    /**
+     * adds a node of level 4 or higher.
+     *
+     * @return the number of the node
+     */
+    int add(int level, int nw, int ne, int sw, int se) {
+        grow();
+        levels[count] = level;
+        quadrants[count * 4] = nw;
+        quadrants[count * 4 + 1] = ne;
+        quadrants[count * 4 + 2] = sw;
+        quadrants[count * 4 + 3] = se;
+        return count++;
+    }
+
+    private void grow() {
+        if (count < levels.length) return;
+        levels = Arrays.copyOf(levels, count * 2);
+        leaves = Arrays.copyOf(leaves, count * 2);
+        quadrants = Arrays.copyOf(quadrants, count * 8);
+    }
+
+    /**
+     * @return the rule given by the file, or null if there is none
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    void setRule(String rule) {
+        this.rule = rule;
+    }
+
+    long getTop() {
+        return top;
+    }
+
+    long getLeft() {
+        return left;
+    }
+
+    /**
+     * places the top left corner of the root at the given row and column.
+     */
+    void setOffset(long top, long left) {
+        this.top = top;
+        this.left = left;
+    }
+
+    int getRoot() {
+        return count - 1;
+    }
+
+    /**
+     * @return the number of nodes, counting the empty node 0
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return log2 of the width of the node
+     */
+    int getLevel(int node) {
+        return levels[node];
+    }
+
+    long getLeaf(int node) {
+        return leaves[node];
+    }
+
+    /**
+     * @param quadrant 0 for nw, 1 for ne, 2 for sw and 3 for se
+     */
+    int getQuadrant(int node, int quadrant) {
+        return quadrants[node * 4 + quadrant];
+    }
+
+    /**
+     * works out the smallest rectangle holding every living cell, in a single pass over the
+     * nodes; quadrants always come before the nodes that hold them. Rows and columns count
+     * from the origin, like those of cells().
+     *
+     * @return the top row, the left column, the bottom row and the right column, all
+     * inclusive, or null if no cell is alive
+     */
+    public long[] getBounds() {
+        long[][] bounds = new long[count][];
+        for (int node = 1; node < count; node++) {
+            if (levels[node] == 3) {
+                long leaf = leaves[node];
+                if (leaf == 0) continue;
+                long rows = 0, columns = 0;
+                for (int r = 0; r < 8; r++) {
+                    long row = leaf >>> (r * 8) & 0xFF;
+                    if (row != 0) rows |= 1L << r;
+                    columns |= row;
+                }
+                bounds[node] = new long[]{Long.numberOfTrailingZeros(rows), Long.numberOfTrailingZeros(columns),
+                        63 - Long.numberOfLeadingZeros(rows), 63 - Long.numberOfLeadingZeros(columns)};
+                continue;
+            }
+            long half = 1L << (levels[node] - 1);
+            for (int q = 0; q < 4; q++) {
+                long[] quadrant = bounds[quadrants[node * 4 + q]];
+                if (quadrant == null) continue;
+                long top = quadrant[0] + (q >= 2 ? half : 0), left = quadrant[1] + (q % 2 == 1 ? half : 0);
+                long bottom = quadrant[2] + (q >= 2 ? half : 0), right = quadrant[3] + (q % 2 == 1 ? half : 0);
+                long[] union = bounds[node];
+                if (union == null) bounds[node] = new long[]{top, left, bottom, right};
+                else {
+                    union[0] = Math.min(union[0], top);
+                    union[1] = Math.min(union[1], left);
+                    union[2] = Math.max(union[2], bottom);
+                    union[3] = Math.max(union[3], right);
+                }
+            }
+        }
+        long[] root = bounds[getRoot()];
+        if (root == null) return null;
+        return new long[]{root[0] + top, root[1] + left, root[2] + top, root[3] + left};
+    }
+
+    /**
+     * passes the living cells inside a rectangle to a handler, relative to its top left
+     * corner. Empty quadrants and those outside of the rectangle are skipped.
+     */
+    public void cells(long top, long left, int rows, int columns, PatternReader.Handler handler) throws IOException {
+        int[] batch = new int[BATCH];
+        int length = cells(getRoot(), this.top, this.left, top, left, rows, columns, handler, batch, 0);
+        if (length > 0) handler.cells(batch, length);
+    }
+
+    private int cells(int node, long nodeTop, long nodeLeft, long top, long left, int rows, int columns,
+                      PatternReader.Handler handler, int[] batch, int length) throws IOException {
+        if (node == 0) return length;
+        long size = 1L << levels[node];
+        if (nodeTop >= top + rows || nodeLeft >= left + columns || nodeTop + size <= top || nodeLeft + size <= left)
+            return length;
+        if (levels[node] == 3) {
+            for (long bits = leaves[node]; bits != 0; bits &= bits - 1) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                long row = nodeTop + (bit >>> 3) - top, col = nodeLeft + (bit & 7) - left;
+                if (row < 0 || row >= rows || col < 0 || col >= columns) continue;
+                batch[length++] = (int) row;
+                batch[length++] = (int) col;
+                if (length == batch.length) {
+                    handler.cells(batch, length);
+                    length = 0;
+                }
+            }
+            return length;
+        }
+        long half = size >>> 1;
+        for (int q = 0; q < 4; q++)
+            length = cells(quadrants[node * 4 + q], nodeTop + (q >= 2 ? half : 0), nodeLeft + (q % 2 == 1 ? half : 0),
+                    top, left, rows, columns, handler, batch, length);
+        return length;
+    }
+
+    /**
+     * writes the table of nodes, a line per node.
+     */
+    public void write(File file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.ISO_8859_1)) {
+            writer.write(HEADER + " (game of life)\n");
+            if (rule != null) writer.write("#R " + rule + "\n");
+            if (top != 0 || left != 0) writer.write("#O " + top + " " + left + "\n");
+            StringBuilder line = new StringBuilder();
+            for (int node = 1; node < count; node++) {
+                line.setLength(0);
+                if (levels[node] == 3) {
+                    long leaf = leaves[node];
+                    for (int r = 0; r < 8; r++) {
+                        long row = leaf >>> (r * 8) & 0xFF;
+                        for (int c = 0; c < 64 - Long.numberOfLeadingZeros(row); c++)
+                            line.append((row >>> c & 1) != 0 ? '*' : '.');
+                        line.append('$');
+                    }
+                } else {
+                    line.append(levels[node]);
+                    for (int q = 0; q < 4; q++)
+                        line.append(' ').append(quadrants[node * 4 + q]);
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+}
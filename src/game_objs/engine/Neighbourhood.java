@@ -0,0 +1,107 @@
+package game_objs.engine;
+
+/**
+ * The cells around a cell that count as its neighbours, given as a mask over the 3x3
+ * square centered on the cell. Bit (r * 3 + c) of the mask is set if the cell at row r
+ * and column c of the square is a neighbour; the center bit is ignored.
+ * <p>
+ * The hexagonal neighbourhood treats the grid as a hexagonal one whose rows are skewed
+ * to the left, so that the cells to the north-east and south-west aren't neighbours.
+ */
+public class Neighbourhood {
+    public static final Neighbourhood MOORE = new Neighbourhood("Moore", 0b111_101_111);
+    public static final Neighbourhood VON_NEUMANN = new Neighbourhood("von Neumann", 0b010_101_010);
+    public static final Neighbourhood HEXAGONAL = new Neighbourhood("hexagonal", 0b110_101_011);
+    //the bit of the cell itself, which is never its own neighbour.
+    private static final int CENTER = 1 << 4;
+
+    private final String name;
+    private final int mask;
+
+    private Neighbourhood(String name, int mask) {
+        this.name = name;
+        this.mask = mask & ~CENTER;
+    }
+
+    /**
+     * @param mask bit (r * 3 + c) is set if the cell at row r and column c of the 3x3
+     *             square is a neighbour
+     */
+    public Neighbourhood(int mask) {
+        this(null, mask);
+    }
+
+    /**
+     * @param neighbourhood "Moore", "von Neumann", "hexagonal" or a custom mask of nine
+     *                      digits listing the 3x3 square row by row, such as "010101010"
+     *                      or "010/101/010"
+     * @return the neighbourhood described by the string; the shared instance if the mask
+     * is one of theirs, whatever the center digit, as neighbourhoods are told apart by identity
+     */
+    public static Neighbourhood parse(String neighbourhood) {
+        String name = neighbourhood.trim().toLowerCase().replace(" ", "");
+        switch (name) {
+            case "moore":
+                return MOORE;
+            case "vonneumann":
+                return VON_NEUMANN;
+            case "hex":
+            case "hexagonal":
+                return HEXAGONAL;
+        }
+        String digits = name.replace("/", "");
+        if (digits.length() != 9)
+            throw new IllegalArgumentException("invalid neighbourhood: " + neighbourhood);
+        int mask = 0;
+        for (int i = 0; i < 9; i++) {
+            char digit = digits.charAt(i);
+            if (digit != '0' && digit != '1')
+                throw new IllegalArgumentException("invalid neighbourhood: " + neighbourhood);
+            if (digit == '1') mask |= 1 << i;
+        }
+        mask &= ~CENTER;
+        if (mask == MOORE.mask) return MOORE;
+        if (mask == VON_NEUMANN.mask) return VON_NEUMANN;
+        if (mask == HEXAGONAL.mask) return HEXAGONAL;
+        return new Neighbourhood(mask);
+    }
+
+    /**
+     * @return 1 if the cell at the given offset from the center is a neighbour, 0 otherwise
+     */
+    public int weight(int rowOffset, int colOffset) {
+        return mask >>> ((rowOffset + 1) * 3 + colOffset + 1) & 1;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * @return the number of neighbours
+     */
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Neighbourhood && ((Neighbourhood) obj).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        if (name != null) return name;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 9; i++) {
+            if (i > 0 && i % 3 == 0) builder.append('/');
+            builder.append(mask >>> i & 1);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,310 @@
+package game_objs.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.IntConsumer;
+
+/**
+ * A bit-packed engine whose rows live outside of the Java heap, so that universes of
+ * billions of cells neither need a heap of that size nor burden the garbage collector.
+ * The rows are held in direct buffers or, for universes beyond the direct memory the JVM
+ * allows (see -XX:MaxDirectMemorySize), in a memory-mapped file that the operating system
+ * pages in and out as needed. A buffer can't exceed 2 GB, so the rows are spread over
+ * chunks of at most 1 GB.
+ * <p>
+ * Rows are computed by BitPackedEngine.stepRow() on three rows copied onto the heap, which
+ * each worker recycles from row to row. Rows around which all cells are dead are skipped,
+ * so a sparse universe costs little more than its living rows.
+ */
+public class OffHeapEngine implements Engine {
+    private static final int CHUNK_LONGS = 1 << 27;
+
+    private int rows;
+    private int columns;
+    private int words;
+    private int rowsPerChunk;
+    private LongBuffer[] current;
+    private LongBuffer[] next;
+    //whether a row of the corresponding buffer may hold living cells; the others are all zeros.
+    private boolean[] currentWritten;
+    private boolean[] nextWritten;
+    private final File file;
+    private Rule rule = Rule.CONWAY;
+    private long generation;
+    private long hash;
+    private Census census;
+    private WorkerPool workerPool;
+    private int slices;
+    //the rows above, at and below the computed one and its next generation, for every slice.
+    private long[][][] scratch = new long[0][][];
+    private long[] sliceHashes = new long[1];
+    private final IntConsumer stepSlice = slice -> sliceHashes[slice] = stepRows(slice,
+            (int) ((long) rows * slice / slices), (int) ((long) rows * (slice + 1) / slices));
+
+    /**
+     * constructs an engine whose rows are held in direct buffers.
+     */
+    public OffHeapEngine(int rows, int columns, WorkerPool workerPool) {
+        this(rows, columns, workerPool, null);
+    }
+
+    /**
+     * @param file the file to which the rows are mapped; it is overwritten and grows to
+     *             twice the size of the universe in bits. Null for direct buffers.
+     */
+    public OffHeapEngine(int rows, int columns, WorkerPool workerPool, File file) {
+        this.workerPool = workerPool;
+        this.file = file;
+        setDimension(rows, columns);
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * allocates the chunks of both buffers, which start out cleared.
+     */
+    @Override
+    public void setDimension(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        words = BitPackedEngine.wordsPerRow(columns);
+        rowsPerChunk = Math.max(1, CHUNK_LONGS / words);
+        int chunks = (rows + rowsPerChunk - 1) / rowsPerChunk;
+        current = new LongBuffer[chunks];
+        next = new LongBuffer[chunks];
+        currentWritten = new boolean[rows];
+        nextWritten = new boolean[rows];
+        try (FileChannel channel = file == null ? null : new RandomAccessFile(file, "rw").getChannel()) {
+            if (channel != null) channel.truncate(0);
+            long offset = 0;
+            for (int i = 0; i < chunks; i++) {
+                long bytes = (long) Math.min(rowsPerChunk, rows - i * rowsPerChunk) * words * 8;
+                current[i] = allocate(channel, offset, bytes);
+                next[i] = allocate(channel, offset + bytes, bytes);
+                offset += 2 * bytes;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't map " + file, e);
+        }
+        generation = 0;
+        hash = 0;
+        census = new Census(rows, columns);
+    }
+
+    /**
+     * @return a chunk in direct memory if channel is null, mapped into the file otherwise
+     */
+    private static LongBuffer allocate(FileChannel channel, long offset, long bytes) throws IOException {
+        ByteBuffer buffer = channel == null ? ByteBuffer.allocateDirect((int) bytes)
+                : channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes);
+        return buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private LongBuffer chunk(LongBuffer[] buffer, int row) {
+        return buffer[row / rowsPerChunk];
+    }
+
+    /**
+     * @return the index of the first word of the row within its chunk
+     */
+    private int offset(int row) {
+        return row % rowsPerChunk * words;
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        return (chunk(current, row).get(offset(row) + (col >>> 6)) >>> col & 1L) != 0;
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        if (isAlive(row, col) == alive) return;
+        LongBuffer chunk = chunk(current, row);
+        int i = offset(row) + (col >>> 6);
+        chunk.put(i, chunk.get(i) ^ 1L << col);
+        currentWritten[row] = true;
+        hash ^= Zobrist.key(row, col);
+        census.set(row, col, alive);
+    }
+
+    @Override
+    public void setAlive(int[] coordinates, int length) {
+        for (int i = 0; i + 1 < length; i += 2) {
+            int row = coordinates[i], col = coordinates[i + 1];
+            LongBuffer chunk = chunk(current, row);
+            int w = offset(row) + (col >>> 6);
+            long before = chunk.get(w);
+            if ((before >>> col & 1L) != 0) continue;
+            chunk.put(w, before | 1L << col);
+            currentWritten[row] = true;
+            hash ^= Zobrist.key(row, col);
+            census.set(row, col, true);
+        }
+    }
+
+    @Override
+    public long bits(int row, int col) {
+        return chunk(current, row).get(offset(row) + (col >>> 6));
+    }
+
+    @Override
+    public void flip(int row, int col, long bits) {
+        LongBuffer chunk = chunk(current, row);
+        int i = offset(row) + (col >>> 6);
+        long before = chunk.get(i);
+        chunk.put(i, before ^ bits);
+        currentWritten[row] = true;
+        hash ^= census.flipped(row, col >>> 6, before, before ^ bits);
+    }
+
+    @Override
+    public void step() {
+        slices = workerPool == null || (long) rows * words < 1 << 14 ? 1 : workerPool.getParallelism();
+        if (scratch.length < slices) {
+            scratch = new long[slices][4][words];
+            sliceHashes = new long[slices];
+        }
+        census.prepare(slices);
+        if (slices == 1) sliceHashes[0] = stepRows(0, 0, rows);
+        else workerPool.run(slices, stepSlice);
+        for (int i = 0; i < slices; i++)
+            hash ^= sliceHashes[i];
+        census.merge(slices);
+
+        LongBuffer[] temp = current;
+        current = next;
+        next = temp;
+        boolean[] written = currentWritten;
+        currentWritten = nextWritten;
+        nextWritten = written;
+        generation++;
+    }
+
+    /**
+     * computes the next generation of a band of rows into the next buffer.
+     *
+     * @param slice the slice, whose scratch rows are used and under which the changes are counted
+     * @param from  first row, inclusive
+     * @param to    last row, exclusive
+     * @return the keys of the cells that were born or died, combined by exclusive or
+     */
+    private long stepRows(int slice, int from, int to) {
+        long[][] rowsAround = scratch[slice];
+        long[] out = rowsAround[3];
+        boolean skipping = !rule.isBirthFromNothing();
+        long hash = 0;
+        //the index of the row held by each scratch row, so that rows are only copied once.
+        int aboveRow = -1, centerRow = -1, belowRow = -1;
+        for (int r = from; r < to; r++) {
+            int above = r == 0 ? rows - 1 : r - 1, below = r == rows - 1 ? 0 : r + 1;
+            if (skipping && census.getRowPopulation(above) == 0 && census.getRowPopulation(r) == 0
+                    && census.getRowPopulation(below) == 0) {
+                if (nextWritten[r]) clearRow(next, r);
+                nextWritten[r] = false;
+                continue;
+            }
+            //moving down by a row turns the center into the row above and the row below into the center.
+            if (centerRow == above && belowRow == r) {
+                long[] recycled = rowsAround[0];
+                rowsAround[0] = rowsAround[1];
+                rowsAround[1] = rowsAround[2];
+                rowsAround[2] = recycled;
+                aboveRow = centerRow;
+                centerRow = belowRow;
+                belowRow = -1;
+            }
+            if (aboveRow != above) read(current, above, rowsAround[0]);
+            if (centerRow != r) read(current, r, rowsAround[1]);
+            if (belowRow != below) read(current, below, rowsAround[2]);
+            aboveRow = above;
+            centerRow = r;
+            belowRow = below;
+
+            BitPackedEngine.stepRow(rowsAround[0], rowsAround[1], rowsAround[2], out, columns, rule);
+            long[] before = rowsAround[1];
+            for (int w = 0; w < words; w++)
+                if (before[w] != out[w]) hash ^= census.changed(slice, r, w, before[w], out[w]);
+            chunk(next, r).put(offset(r), out);
+            nextWritten[r] = true;
+        }
+        return hash;
+    }
+
+    private void read(LongBuffer[] buffer, int row, long[] words) {
+        chunk(buffer, row).get(offset(row), words);
+    }
+
+    /**
+     * fills a row with zeros.
+     */
+    private void clearRow(LongBuffer[] buffer, int row) {
+        LongBuffer chunk = chunk(buffer, row);
+        for (int i = offset(row), end = i + words; i < end; i++)
+            chunk.put(i, 0);
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public long getPopulation() {
+        return census.getPopulation();
+    }
+
+    /**
+     * @return the hash of the universe, which is kept up to date as cells are born and die
+     */
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the statistics, which are kept up to date as cells are born and die
+     */
+    @Override
+    public Statistics getStatistics() {
+        return census.getStatistics(-1);
+    }
+
+    @Override
+    public void clear() {
+        for (int r = 0; r < rows; r++) {
+            if (currentWritten[r]) clearRow(current, r);
+            currentWritten[r] = false;
+        }
+        hash = 0;
+        census.clear();
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule isn't life-like
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (!rule.isLifeLike())
+            throw new IllegalArgumentException("the off-heap engine can only run life-like rules: " + rule);
+        this.rule = rule;
+    }
+}
@@ -0,0 +1,171 @@
+package game_objs.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads files in the #saved and #configs formats:
+ * <pre>
+ * #saved
+ * ~ dim:rows,columns
+ * ~ pos:row,col;row,col;...
+ * ~ rule:rulestring
+ * ~ states:row,col,state;...
+ * </pre>
+ * The file is memory-mapped a window at a time and scanned byte by byte. The digits of the
+ * "pos" and "states" lists go straight into a small array of ints that is handed over
+ * whenever it fills up, so no Strings are made for the coordinates. Memory use stays the
+ * same no matter how many cells a file holds.
+ */
+public final class PatternReader {
+    private static final int WINDOW = 1 << 26;
+    //a multiple of both 2 and 3, so that a batch never splits a cell or a state.
+    private static final int BATCH = 6 << 10;
+
+    public interface Handler {
+        /**
+         * receives a field other than the lists of cells, such as "dim" or "rule".
+         */
+        default void field(String key, String value) throws IOException {
+        }
+
+        /**
+         * receives a batch of the "pos" list.
+         *
+         * @param coordinates the row and the column of every living cell, one after the other
+         * @param length      the number of coordinates used
+         */
+        default void cells(int[] coordinates, int length) throws IOException {
+        }
+
+        /**
+         * receives a batch of the "states" list.
+         *
+         * @param entries the row, the column and the state of every dying cell
+         * @param length  the number of entries used
+         */
+        default void states(int[] entries, int length) throws IOException {
+        }
+    }
+
+    private final Handler handler;
+    private final String header;
+    private final StringBuilder text = new StringBuilder();
+    private final int[] batch = new int[BATCH];
+    private int length;
+    private boolean matched;
+    //0 at the start of a line, 1 in the header, 2 in a key, 3 in a value, 4 in a list, 5 elsewhere.
+    private int mode = 1;
+    private String key;
+    private int group;
+    private int value;
+    private boolean digits;
+    private boolean negative;
+
+    private PatternReader(String header, Handler handler) {
+        this.header = header;
+        this.handler = handler;
+    }
+
+    /**
+     * passes the fields of a file to a handler, in the order in which they appear.
+     *
+     * @param header the first line the file must have, such as "#saved"
+     * @return false if the file starts with a different line, in which case nothing has
+     * been passed to the handler
+     * @throws IOException if the file can't be read, or the handler rejects a field
+     */
+    public static boolean read(File file, String header, Handler handler) throws IOException {
+        PatternReader reader = new PatternReader(header, handler);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW) {
+                reader.scan(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position)));
+                //the header has been read and doesn't match.
+                if (!reader.matched && reader.mode != 1) return false;
+            }
+        }
+        reader.endLine();
+        return reader.matched;
+    }
+
+    private void scan(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int b = buffer.get() & 0xFF;
+            if (b == '\n') {
+                endLine();
+                if (!matched) return;
+                continue;
+            }
+            if (b == '\r') continue;
+            switch (mode) {
+                case 0:
+                    if (b == '~') {
+                        mode = 2;
+                        text.setLength(0);
+                    } else mode = 5;
+                    break;
+                case 1:
+                case 3:
+                    text.append((char) b);
+                    break;
+                case 2:
+                    if (b != ':') {
+                        if (b != ' ') text.append((char) b);
+                        break;
+                    }
+                    key = text.toString();
+                    text.setLength(0);
+                    group = key.equals("pos") ? 2 : key.equals("states") ? 3 : 0;
+                    mode = group == 0 ? 3 : 4;
+                    break;
+                case 4:
+                    if (b >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        digits = true;
+                    } else if (b == '-') negative = true;
+                    else endNumber();
+                    break;
+            }
+        }
+    }
+
+    private void endNumber() throws IOException {
+        if (digits) {
+            batch[length++] = negative ? -value : value;
+            if (length == batch.length) flush();
+        }
+        value = 0;
+        digits = negative = false;
+    }
+
+    private void endLine() throws IOException {
+        switch (mode) {
+            case 1:
+                matched = text.toString().trim().equals(header);
+                break;
+            case 2:
+            case 3:
+                if (key != null) handler.field(key, text.toString().trim());
+                break;
+            case 4:
+                endNumber();
+                length -= length % group;
+                flush();
+                break;
+        }
+        text.setLength(0);
+        key = null;
+        mode = 0;
+    }
+
+    private void flush() throws IOException {
+        if (length == 0) return;
+        if (group == 2) handler.cells(batch, length);
+        else handler.states(batch, length);
+        length = 0;
+    }
+}
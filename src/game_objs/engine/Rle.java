@@ -0,0 +1,274 @@
+package game_objs.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the run length encoded format in which most published patterns come:
+ * <pre>
+ * #N Glider
+ * x = 3, y = 3, rule = B3/S23
+ * bob$2bo$3o!
+ * </pre>
+ * "b" stands for a dead cell, "o" for a living one and "$" for the end of a row, each
+ * preceded by an optional number of repetitions. Patterns of Generations rules use "."
+ * and "A", "B", ... for the states instead, where "A" is alive and the letters after it
+ * are dying.
+ * <p>
+ * Like PatternReader, the file is memory-mapped a window at a time and its cells are
+ * handed over in batches, so that large patterns take no more memory than small ones.
+ */
+public final class Rle {
+    private static final int WINDOW = 1 << 26;
+    private static final int BATCH = 6 << 10;
+    private static final int LINE_WIDTH = 70;
+
+    private final PatternReader.Handler handler;
+    //the current line, until the header has been read.
+    private final StringBuilder line = new StringBuilder();
+    private final int[] cells = new int[BATCH];
+    private final int[] states = new int[BATCH];
+    private int cellCount;
+    private int stateCount;
+    private boolean header;
+    private boolean rejected;
+    private boolean done;
+    private int row;
+    private int col;
+    private int run;
+    //added onto the letter of the states from "pA" onwards.
+    private int prefix;
+
+    private Rle(PatternReader.Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * passes a pattern to a handler: first its dimension as the field "dim", in the form
+     * "rows,columns", and its rule as the field "rule", then its living cells and the
+     * dying cells of Generations rules.
+     *
+     * @return false if the file doesn't start like a run length encoded pattern, in which
+     * case nothing has been passed to the handler
+     * @throws IOException if the file can't be read or is malformed, or the handler rejects
+     *                     a field
+     */
+    public static boolean read(File file, PatternReader.Handler handler) throws IOException {
+        Rle reader = new Rle(handler);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size && !reader.done; position += WINDOW) {
+                reader.scan(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position)));
+                if (reader.rejected) return false;
+            }
+        }
+        if (!reader.header) reader.readHeader();
+        if (!reader.header) return false;
+        reader.flush();
+        return true;
+    }
+
+    private void scan(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && !done) {
+            int b = buffer.get() & 0xFF;
+            if (!header) {
+                if (b != '\n') line.append((char) b);
+                else readHeader();
+                if (rejected) return;
+                continue;
+            }
+            if (b >= '0' && b <= '9') {
+                run = run * 10 + (b - '0');
+                continue;
+            }
+            if (b >= 'p' && b <= 'y') {
+                prefix = (b - 'p' + 1) * 24;
+                continue;
+            }
+            int count = Math.max(run, 1);
+            run = 0;
+            if (b == 'b' || b == '.') col += count;
+            else if (b == 'o') live(count, 1);
+            else if (b >= 'A' && b <= 'X') live(count, prefix + b - 'A' + 1);
+            else if (b == '$') {
+                row += count;
+                col = 0;
+            } else if (b == '!') done = true;
+            else if (b > ' ')
+                throw new IOException("unexpected character in pattern: " + (char) b);
+            prefix = 0;
+        }
+    }
+
+    /**
+     * reads a line before the cells: comments are skipped, and the header passes the
+     * dimension and the rule to the handler. Anything else rejects the file.
+     */
+    private void readHeader() throws IOException {
+        String text = line.toString().trim();
+        line.setLength(0);
+        if (text.isEmpty() || text.startsWith("#")) return;
+        if (!text.startsWith("x")) {
+            rejected = true;
+            return;
+        }
+        int columns = -1, rows = -1;
+        String rule = null;
+        for (String entry : text.split(",")) {
+            String[] pair = entry.split("=", 2);
+            String key = pair[0].trim();
+            //the rules of Larger than Life contain commas themselves.
+            if (key.equals("rule")) {
+                rule = text.substring(text.indexOf('=', text.indexOf("rule")) + 1).trim();
+                //the topology that may follow, such as ":T100,100", is left to the simulation.
+                if (rule.contains(":")) rule = rule.substring(0, rule.indexOf(':'));
+                break;
+            }
+            if (pair.length < 2) continue;
+            try {
+                if (key.equals("x")) columns = Integer.parseInt(pair[1].trim());
+                else if (key.equals("y")) rows = Integer.parseInt(pair[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("invalid header: " + text);
+            }
+        }
+        if (columns < 0 || rows < 0) {
+            rejected = true;
+            return;
+        }
+        header = true;
+        handler.field("dim", Math.max(rows, 1) + "," + Math.max(columns, 1));
+        if (rule != null) handler.field("rule", rule);
+    }
+
+    private void live(int count, int state) throws IOException {
+        for (int i = 0; i < count; i++, col++) {
+            if (state == 1) {
+                cells[cellCount++] = row;
+                cells[cellCount++] = col;
+                if (cellCount == cells.length) flush();
+            } else {
+                states[stateCount++] = row;
+                states[stateCount++] = col;
+                states[stateCount++] = state;
+                if (stateCount == states.length) flush();
+            }
+        }
+    }
+
+    /**
+     * hands the cells read so far to the handler, the living ones first.
+     */
+    private void flush() throws IOException {
+        if (cellCount > 0) handler.cells(cells, cellCount);
+        if (stateCount > 0) handler.states(states, stateCount);
+        cellCount = stateCount = 0;
+    }
+
+    /**
+     * writes the universe of a simulation. Rows and runs are written as they are found, so
+     * that nothing but the current line is kept in memory.
+     */
+    public static void write(Simulation simulation, File file) throws IOException {
+        Engine engine = simulation.getEngine();
+        int rows = engine.getRows(), columns = engine.getColumns();
+        boolean lettered = simulation.getRule().getStates() > 2;
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("x = " + columns + ", y = " + rows + ", rule = " + simulation.getRule() + "\n");
+            Encoder encoder = new Encoder(writer);
+            for (int r = 0; r < rows; r++) {
+                if (!lettered) {
+                    for (int c = 0; c < columns; ) {
+                        boolean alive = (engine.bits(r, c & ~63) >>> (c & 63) & 1) != 0;
+                        int length = run(engine, r, c, columns, alive);
+                        c += length;
+                        //trailing dead cells are left out.
+                        if (alive || c < columns) encoder.run(length, alive ? "o" : "b");
+                    }
+                    encoder.endRow();
+                    continue;
+                }
+                int state = 0, length = 0;
+                for (int c = 0; c < columns; c++) {
+                    int next = simulation.getState(r, c);
+                    if (next != state && length > 0) encoder.run(length, tag(state, lettered));
+                    if (next != state) length = 0;
+                    state = next;
+                    length++;
+                }
+                if (state != 0) encoder.run(length, tag(state, lettered));
+                encoder.endRow();
+            }
+            encoder.end();
+        }
+    }
+
+    /**
+     * @return the number of cells from the given column on that are all alive or all dead,
+     * counted a word at a time
+     */
+    private static int run(Engine engine, int row, int col, int columns, boolean alive) {
+        int c = col;
+        while (c < columns) {
+            long word = engine.bits(row, c & ~63) >>> (c & 63);
+            int left = 64 - (c & 63);
+            int same = Math.min(Long.numberOfTrailingZeros(alive ? ~word : word), left);
+            c += same;
+            if (same < left) break;
+        }
+        return Math.min(c, columns) - col;
+    }
+
+    private static String tag(int state, boolean lettered) {
+        if (!lettered) return state == 0 ? "b" : "o";
+        if (state == 0) return ".";
+        state--;
+        return (state < 24 ? "" : String.valueOf((char) ('p' + state / 24 - 1))) + (char) ('A' + state % 24);
+    }
+
+    /**
+     * puts the runs on lines of at most LINE_WIDTH characters. The ends of rows are held
+     * back until the next run, so that empty rows are merged and the last ones dropped.
+     */
+    private static class Encoder {
+        private final Writer writer;
+        private int lineLength;
+        private int pendingRows;
+
+        private Encoder(Writer writer) {
+            this.writer = writer;
+        }
+
+        private void run(int length, String tag) throws IOException {
+            if (pendingRows > 0) {
+                write(pendingRows > 1 ? pendingRows + "$" : "$");
+                pendingRows = 0;
+            }
+            write(length > 1 ? length + tag : tag);
+        }
+
+        private void endRow() {
+            pendingRows++;
+        }
+
+        private void end() throws IOException {
+            write("!");
+            writer.write("\n");
+        }
+
+        private void write(String token) throws IOException {
+            if (lineLength + token.length() > LINE_WIDTH) {
+                writer.write("\n");
+                lineLength = 0;
+            }
+            writer.write(token);
+            lineLength += token.length();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package game_objs.engine;
+
+/**
+ * A life-like rule given by the numbers of living neighbours for which a dead cell comes
+ * alive (birth) and a living cell stays alive (survival). Rules are written as rulestrings
+ * such as "B3/S23" or, in the older notation that lists survival first, "23/3".
+ * <p>
+ * Rules of the Generations family have more than two states: a living cell that doesn't
+ * survive passes through the dying states 2, 3, ... before it is dead, and only living
+ * cells count as neighbours. Such rules carry the number of states, as in "B2/S/C3"
+ * (Brian's Brain) or "345/2/4" (Star Wars).
+ * <p>
+ * Rules of the Larger than Life family count the living cells within a range R, so that a
+ * cell has up to (2R + 1)^2 - 1 neighbours, and give birth and survival as intervals of
+ * counts. They are written in the notation of Golly, as in "R5,C0,M1,S34..58,B34..45,NM"
+ * (Bosco's Rule), where M1 means that the cell itself is counted as well.
+ * <p>
+ * The 256 elementary rules of one-dimensional automata are written as "W30", after
+ * Wolfram's numbering: bit (4l + 2c + r) of the number gives the next state of a cell
+ * whose left neighbour, own state and right neighbour are l, c and r.
+ * <p>
+ * A rule is compiled once into the forms consumed by the engines: bitmasks indexed by the
+ * neighbour count, word masks for the bit-parallel engines and a block table for the
+ * lookup table engine.
+ */
+public class Rule {
+    public static final Rule CONWAY = parse("B3/S23");
+
+    private final int birth;
+    private final int survival;
+    private final int states;
+    private final int radius;
+    private final boolean middle;
+    private final int birthMin, birthMax;
+    private final int survivalMin, survivalMax;
+    private final int wolfram;
+
+    //one entry for every neighbour count that leads to a living cell.
+    private final long[][] countMasks;
+    private final long[] birthWords;
+    private final long[] survivalWords;
+    private byte[] blockTable;
+
+    /**
+     * @param birth    bit n is set if a dead cell with n living neighbours comes alive
+     * @param survival bit n is set if a living cell with n living neighbours stays alive
+     */
+    public Rule(int birth, int survival) {
+        this(birth, survival, 2);
+    }
+
+    /**
+     * @param states the number of states including dead and alive, 2 for life-like rules
+     */
+    public Rule(int birth, int survival, int states) {
+        this(birth, survival, states, 1, false, 0, -1, 0, -1, -1);
+    }
+
+    /**
+     * creates a Larger than Life rule.
+     *
+     * @param radius      the range of the neighbourhood, at least 2
+     * @param middle      whether the cell itself is part of its neighbourhood
+     * @param birthMin    the least number of living cells for which a dead cell comes alive
+     * @param birthMax    the largest such number
+     * @param survivalMin the least number of living cells for which a living cell stays alive
+     * @param survivalMax the largest such number
+     * @param states      the number of states including dead and alive
+     */
+    public Rule(int radius, boolean middle, int birthMin, int birthMax, int survivalMin, int survivalMax, int states) {
+        this(0, 0, states, radius, middle, birthMin, birthMax, survivalMin, survivalMax, -1);
+        if (radius < 2)
+            throw new IllegalArgumentException("invalid range: " + radius);
+    }
+
+    private Rule(int birth, int survival, int states, int radius, boolean middle,
+                 int birthMin, int birthMax, int survivalMin, int survivalMax, int wolfram) {
+        if (states < 2 || states > 256)
+            throw new IllegalArgumentException("invalid number of states: " + states);
+        this.birth = birth;
+        this.survival = survival;
+        this.states = states;
+        this.radius = radius;
+        this.middle = middle;
+        this.birthMin = birthMin;
+        this.birthMax = birthMax;
+        this.survivalMin = survivalMin;
+        this.survivalMax = survivalMax;
+        this.wolfram = wolfram;
+        int relevant = Integer.bitCount((birth | survival) & 0x1FF);
+        countMasks = new long[relevant][4];
+        birthWords = new long[relevant];
+        survivalWords = new long[relevant];
+        for (int count = 0, i = 0; count <= 8; count++) {
+            if (((birth | survival) >>> count & 1) == 0) continue;
+            //xor-ing bit j of the neighbour count with these yields ones where it matches.
+            for (int j = 0; j < 4; j++)
+                countMasks[i][j] = (count >>> j & 1) != 0 ? 0 : -1L;
+            birthWords[i] = (birth >>> count & 1) != 0 ? -1L : 0;
+            survivalWords[i] = (survival >>> count & 1) != 0 ? -1L : 0;
+            i++;
+        }
+    }
+
+    /**
+     * parses a rulestring; the letters are case insensitive.
+     *
+     * @param rule for instance "B3/S23", "S23/B3", "23/3", "B2/S/C3", "/2/3",
+     *             "R5,C0,M1,S34..58,B34..45,NM" or "W30"
+     * @return the rule described by the string
+     */
+    public static Rule parse(String rule) {
+        if (rule.contains(",")) return parseLargerThanLife(rule);
+        if (rule.trim().toUpperCase().startsWith("W"))
+            return elementary(parseNumber(rule, rule.trim().substring(1)));
+        String[] parts = rule.trim().toUpperCase().split("/", -1);
+        int birth = 0, survival = 0, states = 2;
+        boolean lettered = false;
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i].trim();
+            if (part.startsWith("B")) {
+                birth = parseCounts(rule, part.substring(1));
+                lettered = true;
+            } else if (part.startsWith("S")) {
+                survival = parseCounts(rule, part.substring(1));
+                lettered = true;
+            } else if (part.startsWith("C") || part.startsWith("G")) {
+                states = parseNumber(rule, part.substring(1));
+                lettered = true;
+            } else if (!lettered && (parts.length == 2 || parts.length == 3)) {
+                if (i == 0) survival = parseCounts(rule, part);
+                else if (i == 1) birth = parseCounts(rule, part);
+                else states = parseNumber(rule, part);
+            } else throw new IllegalArgumentException("invalid rule: " + rule);
+        }
+        return new Rule(birth, survival, states);
+    }
+
+    /**
+     * parses a rule in the notation of Golly. A rule of range 1 is turned into the
+     * equivalent life-like or Generations rule.
+     */
+    private static Rule parseLargerThanLife(String rule) {
+        int radius = 1, states = 2;
+        boolean middle = false;
+        int[] birth = null, survival = null;
+        for (String part : rule.trim().toUpperCase().split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) throw new IllegalArgumentException("invalid rule: " + rule);
+            String value = part.substring(1);
+            switch (part.charAt(0)) {
+                case 'R':
+                    radius = parseNumber(rule, value);
+                    break;
+                case 'C':
+                    states = Math.max(2, parseNumber(rule, value));
+                    break;
+                case 'M':
+                    middle = parseNumber(rule, value) != 0;
+                    break;
+                case 'S':
+                    survival = parseInterval(rule, value);
+                    break;
+                case 'B':
+                    birth = parseInterval(rule, value);
+                    break;
+                case 'N':
+                    if (!value.equals("M"))
+                        throw new IllegalArgumentException("only the Moore neighbourhood is supported: " + rule);
+                    break;
+                default:
+                    throw new IllegalArgumentException("invalid rule: " + rule);
+            }
+        }
+        if (birth == null || survival == null || radius < 1)
+            throw new IllegalArgumentException("invalid rule: " + rule);
+        if (radius > 1)
+            return new Rule(radius, middle, birth[0], birth[1], survival[0], survival[1], states);
+
+        //the middle cell adds one onto the count of a living cell.
+        int birthCounts = 0, survivalCounts = 0;
+        for (int count = 0; count <= 8; count++) {
+            if (count >= birth[0] && count <= birth[1]) birthCounts |= 1 << count;
+            int total = middle ? count + 1 : count;
+            if (total >= survival[0] && total <= survival[1]) survivalCounts |= 1 << count;
+        }
+        return new Rule(birthCounts, survivalCounts, states);
+    }
+
+    private static int[] parseInterval(String rule, String interval) {
+        String[] bounds = interval.split("\\.\\.");
+        if (bounds.length != 2) throw new IllegalArgumentException("invalid rule: " + rule);
+        return new int[]{parseNumber(rule, bounds[0]), parseNumber(rule, bounds[1])};
+    }
+
+    /**
+     * @param code the number of the rule in Wolfram's numbering, from 0 to 255
+     * @return the elementary rule of a one-dimensional automaton
+     */
+    public static Rule elementary(int code) {
+        if (code < 0 || code > 255)
+            throw new IllegalArgumentException("invalid elementary rule: " + code);
+        return new Rule(0, 0, 2, 1, false, 0, -1, 0, -1, code);
+    }
+
+    private static int parseNumber(String rule, String digits) {
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid rule: " + rule);
+        }
+    }
+
+    private static int parseCounts(String rule, String digits) {
+        int counts = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int count = digits.charAt(i) - '0';
+            if (count < 0 || count > 8)
+                throw new IllegalArgumentException("invalid rule: " + rule);
+            counts |= 1 << count;
+        }
+        return counts;
+    }
+
+    /**
+     * @param alive      whether the cell is currently alive
+     * @param neighbours the number of living neighbours, including the cell itself if
+     *                   isMiddleIncluded() holds
+     * @return whether the cell is alive in the next generation
+     */
+    public boolean next(boolean alive, int neighbours) {
+        if (radius > 1)
+            return alive ? neighbours >= survivalMin && neighbours <= survivalMax
+                    : neighbours >= birthMin && neighbours <= birthMax;
+        return ((alive ? survival : birth) >>> neighbours & 1) != 0;
+    }
+
+    /**
+     * applies the rule to 64 cells at once, given the bits of their neighbour counts.
+     *
+     * @param alive the cells
+     * @param bit0  bit 0 of the neighbour count of each of the cells
+     * @param bit1  bit 1
+     * @param bit2  bit 2
+     * @param bit3  bit 3
+     * @return the cells in the next generation
+     */
+    public long apply(long alive, long bit0, long bit1, long bit2, long bit3) {
+        long result = 0;
+        for (int i = 0; i < countMasks.length; i++) {
+            long[] masks = countMasks[i];
+            long matches = (bit0 ^ masks[0]) & (bit1 ^ masks[1]) & (bit2 ^ masks[2]) & (bit3 ^ masks[3]);
+            result |= matches & (alive & survivalWords[i] | ~alive & birthWords[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the table that maps a 4x4 neighbourhood to the next generation of its 2x2 center.
+     * Bit (r * 4 + c) of an index holds the cell at row r and column c of the neighbourhood,
+     * bit (r * 2 + c) of an entry the cell at row r and column c of the center.
+     */
+    public synchronized byte[] getBlockTable() {
+        if (blockTable != null) return blockTable;
+        blockTable = new byte[1 << 16];
+        for (int index = 0; index < blockTable.length; index++) {
+            int block = 0;
+            for (int i = 0; i < 4; i++) {
+                int row = 1 + i / 2, col = 1 + i % 2, count = 0;
+                for (int r = row - 1; r <= row + 1; r++)
+                    for (int c = col - 1; c <= col + 1; c++)
+                        if ((r != row || c != col) && (index >>> (r * 4 + c) & 1) != 0)
+                            count++;
+                if (next((index >>> (row * 4 + col) & 1) != 0, count))
+                    block |= 1 << i;
+            }
+            blockTable[index] = (byte) block;
+        }
+        return blockTable;
+    }
+
+    /**
+     * @return the number of states including dead and alive
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * @return the range of the neighbourhood, 1 unless the rule is a Larger than Life rule
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return whether a cell counts itself among its neighbours
+     */
+    public boolean isMiddleIncluded() {
+        return middle;
+    }
+
+    /**
+     * @return the largest number that can be passed to next() as the number of neighbours
+     */
+    public int getMaxNeighbours() {
+        int side = 2 * radius + 1;
+        return middle ? side * side : side * side - 1;
+    }
+
+    /**
+     * @return true if the rule has no states but dead and alive and counts the eight
+     * surrounding cells only
+     */
+    public boolean isLifeLike() {
+        return states == 2 && radius == 1 && wolfram < 0;
+    }
+
+    /**
+     * @return true if the rule is an elementary rule of a one-dimensional automaton
+     */
+    public boolean isElementary() {
+        return wolfram >= 0;
+    }
+
+    /**
+     * @return the number of an elementary rule in Wolfram's numbering, -1 for any other rule
+     */
+    public int getWolframCode() {
+        return wolfram;
+    }
+
+    /**
+     * @return true if dead cells without any living neighbour come alive, which an
+     * unbounded universe can't accommodate.
+     */
+    public boolean isBirthFromNothing() {
+        return radius > 1 ? birthMin <= 0 : (birth & 1) != 0;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Rule)) return false;
+        Rule rule = (Rule) obj;
+        return birth == rule.birth && survival == rule.survival && states == rule.states
+                && radius == rule.radius && middle == rule.middle
+                && birthMin == rule.birthMin && birthMax == rule.birthMax
+                && survivalMin == rule.survivalMin && survivalMax == rule.survivalMax
+                && wolfram == rule.wolfram;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = (birth * 31 + survival) * 31 + states;
+        hash = (hash * 31 + radius) * 31 + (middle ? 1 : 0);
+        hash = (hash * 31 + birthMin) * 31 + birthMax;
+        hash = (hash * 31 + survivalMin) * 31 + survivalMax;
+        return hash * 31 + wolfram;
+    }
+
+    @Override
+    public String toString() {
+        if (isElementary()) return "W" + wolfram;
+        if (radius > 1)
+            return "R" + radius + ",C" + (states == 2 ? 0 : states) + ",M" + (middle ? 1 : 0)
+                    + ",S" + survivalMin + ".." + survivalMax + ",B" + birthMin + ".." + birthMax + ",NM";
+        StringBuilder builder = new StringBuilder("B");
+        for (int count = 0; count <= 8; count++)
+            if ((birth >>> count & 1) != 0) builder.append(count);
+        builder.append("/S");
+        for (int count = 0; count <= 8; count++)
+            if ((survival >>> count & 1) != 0) builder.append(count);
+        if (!isLifeLike()) builder.append("/C").append(states);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,185 @@
+package game_objs.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A process that simulates a horizontal strip of a universe on behalf of a ShardedEngine.
+ * The strip is stored bit-packed between two halo rows, which hold the last row of the
+ * strip above and the first row of the strip below. Before every generation the worker
+ * sends its own edge rows to the workers above and below and receives theirs, directly
+ * over loopback sockets; the engine is only involved to hand out commands.
+ * <p>
+ * The workers form a ring, each connected to the one below, so that the universe wraps
+ * around at the top and bottom; a single worker is connected to itself. The worker quits
+ * once the engine closes its connection.
+ */
+public class ShardWorker {
+    static final byte INIT = 1, RULE = 2, PUT = 3, GET = 4, CLEAR = 5, STEP = 6, STATS = 7, QUIT = 8;
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int index;
+    private DataInputStream fromAbove;
+    private DataOutputStream toAbove;
+    private DataInputStream fromBelow;
+    private DataOutputStream toBelow;
+    //sends the edge rows while the halos are received, so that no worker waits on a full socket.
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "halo sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int columns;
+    private int firstRow;
+    private int height;
+    private long[][] strip;
+    private long[][] next;
+    private Rule rule = Rule.CONWAY;
+
+    private ShardWorker(Socket engine, int index) throws IOException {
+        this.index = index;
+        in = new DataInputStream(new BufferedInputStream(engine.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(engine.getOutputStream()));
+    }
+
+    /**
+     * @param args the port on which the engine accepts its workers, and the index of the
+     *             shard the worker was launched for
+     */
+    public static void main(String[] args) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (Socket engine = new Socket(loopback, Integer.parseInt(args[0]))) {
+            new ShardWorker(engine, Integer.parseInt(args[1])).run(loopback);
+        } catch (EOFException e) {
+            //the engine has gone away.
+        }
+    }
+
+    private void run(InetAddress loopback) throws IOException {
+        Socket above, below;
+        try (ServerSocket halos = new ServerSocket(0, 1, loopback)) {
+            out.writeInt(index);
+            out.writeInt(halos.getLocalPort());
+            out.flush();
+            below = new Socket(loopback, in.readInt());
+            above = halos.accept();
+        }
+        below.setTcpNoDelay(true);
+        above.setTcpNoDelay(true);
+        fromAbove = new DataInputStream(new BufferedInputStream(above.getInputStream()));
+        toAbove = new DataOutputStream(new BufferedOutputStream(above.getOutputStream()));
+        fromBelow = new DataInputStream(new BufferedInputStream(below.getInputStream()));
+        toBelow = new DataOutputStream(new BufferedOutputStream(below.getOutputStream()));
+
+        while (true) {
+            byte command = in.readByte();
+            switch (command) {
+                case INIT:
+                    columns = in.readInt();
+                    firstRow = in.readInt();
+                    height = in.readInt() - firstRow;
+                    strip = new long[height + 2][BitPackedEngine.wordsPerRow(columns)];
+                    next = new long[height + 2][BitPackedEngine.wordsPerRow(columns)];
+                    break;
+                case RULE:
+                    rule = Rule.parse(in.readUTF());
+                    break;
+                case PUT:
+                    for (int r = 1; r <= height; r++)
+                        readRow(in, strip[r]);
+                    break;
+                case GET:
+                    for (int r = 1; r <= height; r++)
+                        writeRow(out, strip[r]);
+                    out.flush();
+                    break;
+                case CLEAR:
+                    strip = new long[height + 2][BitPackedEngine.wordsPerRow(columns)];
+                    break;
+                case STEP:
+                    boolean changed = false;
+                    for (long generations = in.readLong(); generations > 0; generations--)
+                        changed |= step();
+                    out.writeByte(STEP);
+                    out.writeBoolean(changed);
+                    out.flush();
+                    break;
+                case STATS:
+                    writeStats();
+                    break;
+                case QUIT:
+                    return;
+                default:
+                    throw new IOException("unknown command: " + command);
+            }
+        }
+    }
+
+    /**
+     * @return whether any cell of the strip has changed
+     */
+    private boolean step() throws IOException {
+        Future<?> sent = sender.submit(() -> {
+            writeRow(toAbove, strip[1]);
+            writeRow(toBelow, strip[height]);
+            toAbove.flush();
+            toBelow.flush();
+            return null;
+        });
+        readRow(fromAbove, strip[0]);
+        readRow(fromBelow, strip[height + 1]);
+        try {
+            sent.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("can't send the halos", e);
+        }
+
+        boolean changed = false;
+        for (int r = 1; r <= height; r++) {
+            BitPackedEngine.stepRow(strip[r - 1], strip[r], strip[r + 1], next[r], columns, rule);
+            changed |= !Arrays.equals(strip[r], next[r]);
+        }
+        long[][] temp = strip;
+        strip = next;
+        next = temp;
+        return changed;
+    }
+
+    /**
+     * writes the population and the Zobrist hash of the strip, in the coordinates of the universe.
+     */
+    private void writeStats() throws IOException {
+        long population = 0, hash = 0;
+        for (int r = 1; r <= height; r++)
+            for (int w = 0; w < strip[r].length; w++) {
+                population += Long.bitCount(strip[r][w]);
+                hash ^= Zobrist.word(firstRow + r - 1, w, strip[r][w]);
+            }
+        out.writeLong(population);
+        out.writeLong(hash);
+        out.flush();
+    }
+
+    static void readRow(DataInputStream in, long[] row) throws IOException {
+        for (int w = 0; w < row.length; w++)
+            row[w] = in.readLong();
+    }
+
+    static void writeRow(DataOutputStream out, long[] row) throws IOException {
+        for (long word : row)
+            out.writeLong(word);
+    }
+}
@@ -0,0 +1,425 @@
+package game_objs.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the universe into horizontal strips, each of which is simulated by a ShardWorker
+ * in a process of its own, so that a universe is limited by neither the heap nor the
+ * processors of a single JVM. The workers exchange the rows along their edges among each
+ * other; this engine only tells them how many generations to advance.
+ * <p>
+ * The engine assembles the universe strip by strip as it is looked at: a strip is fetched
+ * from its worker when one of its cells is read after a step, and cells that are set are
+ * sent back before the next one. Strips that aren't looked at never leave their worker,
+ * and neither do those that the workers report as unchanged by a step.
+ * <p>
+ * The workers are launched on the first step, with the class path of this JVM, and quit
+ * when the engine is closed or its JVM exits. Each of them reports the shard it was launched
+ * for as it connects; if any of them fails to connect in time, the step fails and all
+ * workers launched for it are destroyed.
+ */
+public class ShardedEngine implements Engine, AutoCloseable {
+    //the milliseconds a worker has to connect once it has been launched.
+    private static final int CONNECT_TIMEOUT = 30000;
+
+    private int rows;
+    private int columns;
+    private final int maxShards;
+    private Shard[] shards = new Shard[0];
+    private Rule rule = Rule.CONWAY;
+    private long generation;
+
+    /**
+     * a strip of rows along with the worker that simulates it.
+     */
+    private static class Shard {
+        private final int firstRow;
+        private final int endRow;
+        private Process process;
+        private Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+        //the strip as last fetched from the worker, or null if it was all dead.
+        private long[][] cells;
+        //whether the worker has advanced beyond cells.
+        private boolean stale;
+        //whether cells were set since the worker was last sent the strip.
+        private boolean dirty;
+        //whether cells may have changed since the strip was last collected by collectChanged().
+        private boolean changed = true;
+
+        private Shard(int firstRow, int endRow) {
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+        }
+    }
+
+    /**
+     * @param shards the number of worker processes; universes of fewer rows get one per row
+     */
+    public ShardedEngine(int rows, int columns, int shards) {
+        if (shards < 1) throw new IllegalArgumentException("there must be at least one shard: " + shards);
+        maxShards = shards;
+        setDimension(rows, columns);
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * divides the rows into strips; workers that are running are resized along with them.
+     */
+    @Override
+    public void setDimension(int rows, int columns) {
+        boolean running = isRunning() && shards.length == Math.min(maxShards, rows);
+        if (!running) close();
+        this.rows = rows;
+        this.columns = columns;
+        Shard[] resized = new Shard[Math.min(maxShards, rows)];
+        for (int i = 0; i < resized.length; i++) {
+            resized[i] = new Shard((int) ((long) rows * i / resized.length), (int) ((long) rows * (i + 1) / resized.length));
+            if (running) {
+                resized[i].process = shards[i].process;
+                resized[i].socket = shards[i].socket;
+                resized[i].in = shards[i].in;
+                resized[i].out = shards[i].out;
+            }
+        }
+        shards = resized;
+        if (running) {
+            try {
+                for (Shard shard : shards)
+                    init(shard);
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        generation = 0;
+    }
+
+    private boolean isRunning() {
+        return shards.length > 0 && shards[0].process != null;
+    }
+
+    /**
+     * launches a worker for every shard and links them up into a ring.
+     */
+    private void launch() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        try (ServerSocket server = new ServerSocket(0, shards.length, loopback)) {
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            try {
+                for (int i = 0; i < shards.length; i++)
+                    shards[i].process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                            ShardWorker.class.getName(), String.valueOf(server.getLocalPort()), String.valueOf(i))
+                            .inheritIO().start();
+
+                //the workers connect in any order, and report which shard they were launched for.
+                int[] haloPorts = new int[shards.length];
+                for (int i = 0; i < shards.length; i++) {
+                    Socket socket = server.accept();
+                    socket.setSoTimeout(CONNECT_TIMEOUT);
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    int index = in.readInt();
+                    if (index < 0 || index >= shards.length || shards[index].socket != null) {
+                        socket.close();
+                        throw new IOException("unexpected worker: " + index);
+                    }
+                    Shard shard = shards[index];
+                    shard.socket = socket;
+                    shard.in = in;
+                    shard.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    haloPorts[index] = in.readInt();
+                    socket.setTcpNoDelay(true);
+                }
+                for (int i = 0; i < shards.length; i++) {
+                    shards[i].out.writeInt(haloPorts[(i + 1) % shards.length]);
+                    //a generation of a large strip may take a while.
+                    shards[i].socket.setSoTimeout(0);
+                }
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+        for (Shard shard : shards) {
+            init(shard);
+            shard.out.writeByte(ShardWorker.RULE);
+            shard.out.writeUTF(rule.toString());
+            shard.dirty = shard.cells != null;
+        }
+        flush();
+    }
+
+    /**
+     * destroys the workers that were launched and closes their connections, after a launch
+     * has failed.
+     */
+    private void abort() {
+        for (Shard shard : shards) {
+            if (shard.process != null) shard.process.destroy();
+            if (shard.socket != null) {
+                try {
+                    shard.socket.close();
+                } catch (IOException e) {
+                    //the worker is gone either way.
+                }
+            }
+            shard.process = null;
+            shard.socket = null;
+            shard.in = null;
+            shard.out = null;
+        }
+    }
+
+    private void init(Shard shard) throws IOException {
+        shard.out.writeByte(ShardWorker.INIT);
+        shard.out.writeInt(columns);
+        shard.out.writeInt(shard.firstRow);
+        shard.out.writeInt(shard.endRow);
+    }
+
+    private void flush() throws IOException {
+        for (Shard shard : shards)
+            shard.out.flush();
+    }
+
+    private Shard shardOf(int row) {
+        int i = (int) ((long) row * shards.length / rows);
+        while (row < shards[i].firstRow) i--;
+        while (row >= shards[i].endRow) i++;
+        return shards[i];
+    }
+
+    /**
+     * brings the copy of a strip up to date with its worker.
+     */
+    private void fetch(Shard shard) {
+        if (!shard.stale) return;
+        try {
+            shard.out.writeByte(ShardWorker.GET);
+            shard.out.flush();
+            if (shard.cells == null)
+                shard.cells = new long[shard.endRow - shard.firstRow][BitPackedEngine.wordsPerRow(columns)];
+            for (long[] row : shard.cells)
+                ShardWorker.readRow(shard.in, row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        shard.stale = false;
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        Shard shard = shardOf(row);
+        fetch(shard);
+        return shard.cells != null && (shard.cells[row - shard.firstRow][col >>> 6] >>> col & 1L) != 0;
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        Shard shard = shardOf(row);
+        fetch(shard);
+        if (shard.cells == null) {
+            if (!alive) return;
+            shard.cells = new long[shard.endRow - shard.firstRow][BitPackedEngine.wordsPerRow(columns)];
+        }
+        long[] words = shard.cells[row - shard.firstRow];
+        if (alive) words[col >>> 6] |= 1L << col;
+        else words[col >>> 6] &= ~(1L << col);
+        shard.dirty = true;
+        shard.changed = true;
+    }
+
+    /**
+     * sends the strips whose cells were set to their workers, launching them if necessary.
+     */
+    private void push() throws IOException {
+        if (!isRunning()) launch();
+        for (Shard shard : shards) {
+            if (!shard.dirty) continue;
+            shard.out.writeByte(ShardWorker.PUT);
+            for (long[] row : shard.cells)
+                ShardWorker.writeRow(shard.out, row);
+            shard.dirty = false;
+        }
+    }
+
+    @Override
+    public void step() {
+        step(1);
+    }
+
+    /**
+     * has all workers advance by the given number of generations at once; they only wait
+     * for each other to exchange the rows along their edges. Each of them answers whether
+     * its strip has changed, and only the strips that have are fetched again.
+     */
+    @Override
+    public void step(long generations) {
+        try {
+            push();
+            for (Shard shard : shards) {
+                shard.out.writeByte(ShardWorker.STEP);
+                shard.out.writeLong(generations);
+            }
+            flush();
+            for (Shard shard : shards) {
+                if (shard.in.readByte() != ShardWorker.STEP)
+                    throw new IOException("worker out of step");
+                if (shard.in.readBoolean()) {
+                    shard.stale = true;
+                    shard.changed = true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        generation += generations;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the population and the hash of the universe, as added up by the workers
+     */
+    private long[] stats() {
+        try {
+            push();
+            for (Shard shard : shards)
+                shard.out.writeByte(ShardWorker.STATS);
+            flush();
+            long[] stats = new long[2];
+            for (Shard shard : shards) {
+                stats[0] += shard.in.readLong();
+                stats[1] ^= shard.in.readLong();
+            }
+            return stats;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of living cells, as counted by the workers
+     */
+    @Override
+    public long getPopulation() {
+        return stats()[0];
+    }
+
+    /**
+     * @return the hash of the universe, put together from those of the strips
+     */
+    @Override
+    public long getHash() {
+        return stats()[1];
+    }
+
+    /**
+     * sets the flags of all tiles of the strips that have changed.
+     */
+    @Override
+    public void collectChanged(boolean[] flags) {
+        int tileColumns = (columns + TileTracker.TILE_SIZE - 1) >> TileTracker.TILE_SHIFT;
+        for (Shard shard : shards) {
+            if (!shard.changed) continue;
+            int first = (shard.firstRow >> TileTracker.TILE_SHIFT) * tileColumns;
+            int end = (((shard.endRow - 1) >> TileTracker.TILE_SHIFT) + 1) * tileColumns;
+            Arrays.fill(flags, first, end, true);
+            shard.changed = false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Shard shard : shards) {
+            shard.cells = null;
+            shard.stale = false;
+            shard.dirty = false;
+            shard.changed = true;
+        }
+        if (!isRunning()) return;
+        try {
+            for (Shard shard : shards)
+                shard.out.writeByte(ShardWorker.CLEAR);
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule isn't life-like
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (!rule.isLifeLike())
+            throw new IllegalArgumentException("the sharded engine can only run life-like rules: " + rule);
+        this.rule = rule;
+        if (!isRunning()) return;
+        try {
+            for (Shard shard : shards) {
+                shard.out.writeByte(ShardWorker.RULE);
+                shard.out.writeUTF(rule.toString());
+            }
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * stops the workers. The cells that were fetched last are kept, and the workers are
+     * launched again by the next step.
+     */
+    @Override
+    public void close() {
+        if (!isRunning()) return;
+        for (Shard shard : shards) {
+            fetch(shard);
+            try {
+                shard.out.writeByte(ShardWorker.QUIT);
+                shard.out.flush();
+                shard.socket.close();
+                if (!shard.process.waitFor(1, TimeUnit.SECONDS)) shard.process.destroy();
+            } catch (IOException e) {
+                shard.process.destroy();
+            } catch (InterruptedException e) {
+                shard.process.destroy();
+                Thread.currentThread().interrupt();
+            }
+            shard.process = null;
+            shard.socket = null;
+            shard.dirty = shard.cells != null;
+        }
+    }
+}
@@ -0,0 +1,636 @@
+package game_objs.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * A universe along with the engine that advances it, its rule and its topology. This is
+ * everything the game needs to run, without anything that draws it, so that patterns can
+ * be loaded, run and saved without Processing; see RunHeadless. Context puts a cell on
+ * screen for every cell of its simulation.
+ * <p>
+ * The engine is switched by name. A rule or a topology that the current engine can't run
+ * switches to an engine that can; an engine that can't run the current rule or topology is
+ * refused with an IllegalArgumentException, and the simulation is left as it was. Nothing
+ * is ever printed; that is left to whoever drives the simulation.
+ * <p>
+ * With cycle detection on, the hash of the universe is recorded after every step. Once
+ * the universe repeats itself, whole periods are skipped rather than computed whenever
+ * the simulation is advanced by more generations than a period has.
+ */
+public class Simulation {
+    public static final String[] ENGINES = {"Classic", "Bit-packed", "Lookup table", "HashLife", "Sparse",
+            "Generations", "Larger than Life", "Elementary", "Off-heap", "Sharded"};
+    //the most rows and columns a universe gets when a macrocell is loaded.
+    public static final int VIEWPORT = 1 << 12;
+    //the number of worker processes of the sharded engine.
+    private static final int SHARDS = 4;
+    private static WorkerPool sharedPool;
+
+    private final WorkerPool workerPool;
+    private Engine engine;
+    private String engineName = ENGINES[0];
+    private Rule rule = Rule.CONWAY;
+    private Neighbourhood neighbourhood = Neighbourhood.MOORE;
+    private Boundary boundary = Boundary.TORUS;
+    private CycleDetector cycleDetector;
+    //set whenever the universe is changed by other means than advancing it.
+    private boolean changed;
+    //the generations not counted by the engine: those skipped over by extrapolating a cycle,
+    //and those before a checkpoint was taken.
+    private long skippedGenerations;
+
+    /**
+     * constructs a simulation that runs on the classic engine and shares its workers
+     * with all other simulations.
+     */
+    public Simulation(int rows, int columns) {
+        this(rows, columns, getSharedPool());
+    }
+
+    public Simulation(int rows, int columns, WorkerPool workerPool) {
+        this(rows, columns, ENGINES[0], workerPool);
+    }
+
+    /**
+     * constructs a simulation that runs on the given engine from the start, so that a
+     * universe too large for the classic engine is never allocated by it.
+     *
+     * @param engine one of ENGINES
+     * @throws IllegalArgumentException if there is no such engine
+     */
+    public Simulation(int rows, int columns, String engine, WorkerPool workerPool) {
+        if (!Arrays.asList(ENGINES).contains(engine))
+            throw new IllegalArgumentException("no such engine: " + engine);
+        this.workerPool = workerPool;
+        this.engine = createEngine(engine, rows, columns);
+        engineName = engine;
+        rule = this.engine.getRule();
+    }
+
+    /**
+     * @param enabled whether steps are checked for a still life or an oscillator, which costs
+     *                a pass over the universe per step on engines that don't keep its hash
+     */
+    public void setCycleDetection(boolean enabled) {
+        cycleDetector = enabled ? new CycleDetector(1 << 12) : null;
+        changed = true;
+    }
+
+    public boolean isCycleDetection() {
+        return cycleDetector != null;
+    }
+
+    /**
+     * @return the period of the cycle the universe has entered, 1 for a still life and 0 if
+     * none was found or cycle detection is off. Steps of more than one generation may find
+     * a multiple of the least period.
+     */
+    public long getPeriod() {
+        return cycleDetector == null || changed ? 0 : cycleDetector.getPeriod();
+    }
+
+    /**
+     * @return the generation from which on the universe repeats itself; see getPeriod()
+     */
+    public long getCycleStart() {
+        return cycleDetector == null || changed ? 0 : cycleDetector.getStart();
+    }
+
+    /**
+     * to be called whenever the universe is changed by other means than advancing it. The
+     * generations recorded so far are forgotten before the next step.
+     */
+    private void changed() {
+        changed = true;
+    }
+
+    /**
+     * @return a pool with a worker for every available processor
+     */
+    public static synchronized WorkerPool getSharedPool() {
+        if (sharedPool == null)
+            sharedPool = new WorkerPool(Runtime.getRuntime().availableProcessors());
+        return sharedPool;
+    }
+
+    private Engine createEngine(String name, int rows, int columns) {
+        switch (name) {
+            case "Bit-packed":
+                return new BitPackedEngine(rows, columns, workerPool);
+            case "Lookup table":
+                return new LookupTableEngine(rows, columns, workerPool);
+            case "HashLife":
+                return new HashLifeEngine(rows, columns);
+            case "Sparse":
+                return new SparseEngine(rows, columns);
+            case "Generations":
+                return new GenerationsEngine(rows, columns, workerPool);
+            case "Larger than Life":
+                return new LargerThanLifeEngine(rows, columns, workerPool);
+            case "Elementary":
+                return new ElementaryEngine(rows, columns, workerPool);
+            case "Off-heap":
+                return new OffHeapEngine(rows, columns, workerPool);
+            case "Sharded":
+                return new ShardedEngine(rows, columns, SHARDS);
+            default:
+                ClassicEngine classic = new ClassicEngine(rows, columns, workerPool);
+                classic.setNeighbourhood(neighbourhood);
+                classic.setBoundary(boundary);
+                return classic;
+        }
+    }
+
+    /**
+     * @return the state of a cell; 0 for dead, 1 for alive and 2 or more for the dying
+     * cells of Generations rules
+     */
+    private static int getState(Engine engine, int row, int col) {
+        if (engine instanceof GenerationsEngine)
+            return ((GenerationsEngine) engine).getState(row, col);
+        return engine.isAlive(row, col) ? 1 : 0;
+    }
+
+    private static void setState(Engine engine, int row, int col, int state) {
+        if (engine instanceof GenerationsEngine)
+            ((GenerationsEngine) engine).setState(row, col, state);
+        else engine.setAlive(row, col, state == 1);
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    /**
+     * switches the engine that computes the generations; the cells are carried over.
+     * Elementary rules and the elementary engine only make sense together, so the rule
+     * falls back to Rule 30 or Conway's rule when switching to or from it.
+     *
+     * @param name one of ENGINES
+     * @throws IllegalArgumentException if the engine can't run the rule, or the topology
+     *                                  isn't the Moore neighbourhood on a torus and the engine
+     *                                  isn't the classic one
+     */
+    public void setEngine(String name) {
+        Rule rule = this.rule;
+        boolean elementary = name.equals("Elementary");
+        if (elementary != rule.isElementary())
+            rule = elementary ? ElementaryEngine.RULE_30 : Rule.CONWAY;
+        switchEngine(name, rule);
+    }
+
+    /**
+     * switches the engine and the rule at once. Nothing changes if the engine refuses either.
+     */
+    private void switchEngine(String name, Rule rule) {
+        if (!name.equals(ENGINES[0]) && (neighbourhood != Neighbourhood.MOORE || boundary != Boundary.TORUS))
+            throw new IllegalArgumentException("the " + name + " engine only runs the Moore neighbourhood on a torus");
+        Engine engine = createEngine(name, getRows(), getColumns());
+        try {
+            engine.setRule(rule);
+        } catch (IllegalArgumentException e) {
+            close(engine);
+            throw e;
+        }
+        for (int r = 0; r < getRows(); r++)
+            for (int c = 0; c < getColumns(); c++) {
+                int state = getState(this.engine, r, c);
+                if (state != 0) setState(engine, r, c, state);
+            }
+        close(this.engine);
+        this.engine = engine;
+        this.rule = rule;
+        engineName = name;
+        skippedGenerations = 0;
+        changed();
+    }
+
+    /**
+     * releases what an engine holds beyond its memory, such as the processes of the sharded engine.
+     */
+    private static void close(Engine engine) {
+        if (engine instanceof ShardedEngine) ((ShardedEngine) engine).close();
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * switches the rule. Multi-state rules such as "B2/S/C3" (Brian's Brain) switch to the
+     * Generations engine, rules of a larger range such as "R5,C0,M1,S34..58,B34..45,NM" to
+     * the Larger than Life engine and elementary rules such as "W30" to the elementary engine.
+     *
+     * @throws IllegalArgumentException if the current engine can't run the rule and none
+     *                                  has to take over, or the one that has to can't run the
+     *                                  topology
+     */
+    public void setRule(Rule rule) {
+        String required = requiredEngine(rule);
+        if (required != null) switchEngine(required, rule);
+        else {
+            engine.setRule(rule);
+            this.rule = rule;
+            changed();
+        }
+    }
+
+    /**
+     * @return the engine that has to take over so that the rule can be run, or null if
+     * the current one can run it
+     */
+    private String requiredEngine(Rule rule) {
+        if (rule.isElementary()) return engine instanceof ElementaryEngine ? null : "Elementary";
+        if (rule.getRadius() > 1) return engine instanceof LargerThanLifeEngine ? null : "Larger than Life";
+        if (!rule.isLifeLike()) return engine instanceof GenerationsEngine ? null : "Generations";
+        return engine instanceof ElementaryEngine ? ENGINES[0] : null;
+    }
+
+    public Neighbourhood getNeighbourhood() {
+        return neighbourhood;
+    }
+
+    /**
+     * switches the cells that count as neighbours. Only the classic engine runs
+     * neighbourhoods other than the Moore neighbourhood, so it takes over from any other.
+     *
+     * @throws IllegalArgumentException if the classic engine has to take over but can't run
+     *                                  the rule
+     */
+    public void setNeighbourhood(Neighbourhood neighbourhood) {
+        if (!(engine instanceof ClassicEngine) && neighbourhood != Neighbourhood.MOORE) switchEngine(ENGINES[0], rule);
+        this.neighbourhood = neighbourhood;
+        if (engine instanceof ClassicEngine) ((ClassicEngine) engine).setNeighbourhood(neighbourhood);
+        changed();
+    }
+
+    public Boundary getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * switches what lies beyond the edges of the grid. Only the classic engine runs
+     * boundaries other than the torus, so it takes over from any other.
+     *
+     * @throws IllegalArgumentException if the classic engine has to take over but can't run
+     *                                  the rule
+     */
+    public void setBoundary(Boundary boundary) {
+        if (!(engine instanceof ClassicEngine) && boundary != Boundary.TORUS) switchEngine(ENGINES[0], rule);
+        this.boundary = boundary;
+        if (engine instanceof ClassicEngine) ((ClassicEngine) engine).setBoundary(boundary);
+        changed();
+    }
+
+    public int getRows() {
+        return engine.getRows();
+    }
+
+    public int getColumns() {
+        return engine.getColumns();
+    }
+
+    /**
+     * updates the dimension of the universe. All cells are cleared.
+     */
+    public void setDimension(int rows, int columns) {
+        engine.setDimension(rows, columns);
+        skippedGenerations = 0;
+        changed();
+    }
+
+    public boolean isAlive(int row, int col) {
+        return engine.isAlive(row, col);
+    }
+
+    public void setAlive(int row, int col, boolean alive) {
+        engine.setAlive(row, col, alive);
+        changed();
+    }
+
+    /**
+     * @return the state of a cell; 0 for dead, 1 for alive and 2 or more for the dying
+     * cells of Generations rules
+     */
+    public int getState(int row, int col) {
+        return getState(engine, row, col);
+    }
+
+    /**
+     * @param state 0 for dead, 1 for alive and 2 or more for the dying cells of Generations rules
+     * @throws IllegalArgumentException if the rule has no such state
+     */
+    public void setState(int row, int col, int state) {
+        if (state < 0 || state >= rule.getStates())
+            throw new IllegalArgumentException("state " + state + " out of range for " + rule);
+        setState(engine, row, col, state);
+        changed();
+    }
+
+    /**
+     * flips the cells of the universe at random; a cell that is flipped comes alive if it was
+     * dead and dies if it was alive. The same seed always yields the same soup.
+     *
+     * @param density the probability of a cell being flipped, between 0 and 1
+     * @param seed    determines the soup
+     * @throws IllegalArgumentException if the density doesn't lie between 0 and 1
+     */
+    public void flipRandom(double density, long seed) {
+        Soup.flip(engine, density, seed, workerPool);
+        changed();
+    }
+
+    public void step() {
+        step(1);
+    }
+
+    /**
+     * advances the universe by the given number of generations. Engines such as
+     * HashLife skip the intermediate generations altogether, and so are whole periods
+     * once a cycle is found, except on engines that show the generations before; see
+     * Engine.showsHistory().
+     */
+    public void step(long generations) {
+        if (cycleDetector != null && changed) {
+            cycleDetector.clear();
+            cycleDetector.record(engine.getHash(), getGeneration());
+        }
+        changed = false;
+        long period = getPeriod();
+        if (period > 0 && !engine.showsHistory()) {
+            skippedGenerations += generations - generations % period;
+            generations %= period;
+        }
+        if (generations == 1) engine.step();
+        else if (generations > 1) engine.step(generations);
+        if (cycleDetector != null && period == 0) cycleDetector.record(engine.getHash(), getGeneration());
+    }
+
+    public long getGeneration() {
+        return engine.getGeneration() + skippedGenerations;
+    }
+
+    /**
+     * @return the number of living cells
+     */
+    public long getPopulation() {
+        return engine.getPopulation();
+    }
+
+    /**
+     * @return the population, the bounding box and the churn of the current generation;
+     * see Engine.getStatistics()
+     */
+    public Statistics getStatistics() {
+        return engine.getStatistics();
+    }
+
+    /**
+     * sets the flags of the tiles that may have changed since the last invocation; see
+     * Engine.collectChanged()
+     */
+    void collectChanged(boolean[] flags) {
+        engine.collectChanged(flags);
+    }
+
+    /**
+     * @return the number of living cells within the given rectangle
+     */
+    public long getPopulation(int row, int col, int height, int width) {
+        long population = 0;
+        for (int r = row; r < row + height; r++)
+            for (int c = col; c < col + width; c++)
+                if (engine.isAlive(r, c)) population++;
+        return population;
+    }
+
+    /**
+     * @return a copy of the cells within the given rectangle, indexed from its top left corner
+     */
+    public boolean[][] getRegion(int row, int col, int height, int width) {
+        boolean[][] region = new boolean[height][width];
+        for (int r = 0; r < height; r++)
+            for (int c = 0; c < width; c++)
+                region[r][c] = engine.isAlive(row + r, col + c);
+        return region;
+    }
+
+    public void clear() {
+        engine.clear();
+        changed();
+    }
+
+    /**
+     * loads a saved game, consisting of the lines
+     * "#saved", "~ dim:rows,columns", "~ pos:row,col;row,col;...", and optionally
+     * "~ rule:rulestring" and "~ states:row,col,state;..." for the dying cells of
+     * Generations rules. The rule defaults to Conway's rule. The file is read by a
+     * PatternReader and its cells are handed to the engine in batches, as they are read.
+     * Checkpoints, run length encoded patterns and macrocells are loaded as well; see
+     * saveCheckpoint(), Rle and Macrocell.
+     *
+     * @param file the saved game
+     * @throws IOException if the file can't be read or isn't a saved game
+     */
+    public void load(File file) throws IOException {
+        if (Checkpoint.isCheckpoint(file)) {
+            Checkpoint.read(this, file);
+            return;
+        }
+        if (Macrocell.isMacrocell(file)) {
+            load(Macrocell.read(file));
+            return;
+        }
+        boolean[] dimensioned = new boolean[1];
+        boolean[] ruled = new boolean[1];
+        PatternReader.Handler handler = new PatternReader.Handler() {
+            @Override
+            public void field(String key, String value) throws IOException {
+                if (key.equals("dim")) {
+                    String[] dim = value.split(",");
+                    try {
+                        setDimension(Integer.parseInt(dim[0].trim()), Integer.parseInt(dim[1].trim()));
+                    } catch (RuntimeException e) {
+                        throw new IOException("invalid dimension: " + value);
+                    }
+                    clear();
+                    //the rule is settled before any cell is loaded, so that switching engines
+                    //can't lose them; a rule that follows replaces it.
+                    if (!ruled[0]) loadRule(Rule.CONWAY.toString());
+                    dimensioned[0] = true;
+                } else if (key.equals("rule")) {
+                    loadRule(value);
+                    ruled[0] = true;
+                }
+            }
+
+            @Override
+            public void cells(int[] coordinates, int length) throws IOException {
+                check(coordinates, length, 2);
+                engine.setAlive(coordinates, length);
+                changed();
+            }
+
+            @Override
+            public void states(int[] entries, int length) throws IOException {
+                check(entries, length, 3);
+                for (int i = 0; i < length; i += 3)
+                    checkState(entries[i + 2]);
+                for (int i = 0; i < length; i += 3)
+                    setState(entries[i], entries[i + 1], entries[i + 2]);
+            }
+
+            private void check(int[] cells, int length, int group) throws IOException {
+                if (!dimensioned[0])
+                    throw new IOException("missing dimension: " + file.getName());
+                for (int i = 0; i < length; i += group)
+                    if (cells[i] < 0 || cells[i] >= getRows() || cells[i + 1] < 0 || cells[i + 1] >= getColumns())
+                        throw new IOException("cell out of bounds: " + cells[i] + "," + cells[i + 1]);
+            }
+        };
+        if (!PatternReader.read(file, "#saved", handler) && !Rle.read(file, handler))
+            throw new IOException("not a saved game: " + file.getName());
+        if (!dimensioned[0])
+            throw new IOException("missing dimension: " + file.getName());
+    }
+
+    /**
+     * @throws IOException if the rule of the simulation has no such state, as the engines
+     *                     would run past the end of their tables
+     */
+    void checkState(int state) throws IOException {
+        if (state < 0 || state >= rule.getStates())
+            throw new IOException("state " + state + " out of range for " + rule);
+    }
+
+    /**
+     * switches to the rule of a file that is being loaded.
+     *
+     * @throws IOException if the rule is invalid, or no engine can run it on the topology
+     */
+    void loadRule(String rule) throws IOException {
+        try {
+            setRule(Rule.parse(rule));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * writes the universe in the format read by load().
+     */
+    public void save(PrintWriter writer) {
+        writer.println("#saved");
+        writer.println("~ dim:" + getRows() + "," + getColumns());
+        //the rule comes first, so that the cells are loaded straight into the engine that runs it.
+        writer.println("~ rule:" + rule);
+        writer.print("~ pos:");
+        for (int r = 0; r < getRows(); r++)
+            for (int c = 0; c < getColumns(); c++)
+                if (isAlive(r, c))
+                    writer.print(r + "," + c + ";");
+        writer.println();
+        if (rule.getStates() > 2) {
+            writer.print("~ states:");
+            for (int r = 0; r < getRows(); r++)
+                for (int c = 0; c < getColumns(); c++)
+                    if (getState(r, c) > 1)
+                        writer.print(r + "," + c + "," + getState(r, c) + ";");
+            writer.println();
+        }
+    }
+
+    public void save(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            save(writer);
+        }
+    }
+
+    /**
+     * saves the universe in the binary checkpoint format, which takes a bit per cell and
+     * keeps the generation; see Checkpoint. load() tells it from the "#saved" format.
+     */
+    public void saveCheckpoint(File file) throws IOException {
+        Checkpoint.write(this, file);
+    }
+
+    /**
+     * @return true if the file is a checkpoint rather than a "#saved" game
+     */
+    public static boolean isCheckpoint(File file) throws IOException {
+        return Checkpoint.isCheckpoint(file);
+    }
+
+    /**
+     * replaces the universe by a macrocell. The universe starts at the origin and reaches as
+     * far as the pattern does, but no further than VIEWPORT cells either way, so that the
+     * patterns of astronomical size the format is made for don't take memory for every cell.
+     * The HashLife engine takes over the whole quadtree as it is and runs all of it; other
+     * engines only receive the cells within the universe.
+     *
+     * @throws IOException if the rule is invalid
+     */
+    public void load(Macrocell macrocell) throws IOException {
+        long[] bounds = macrocell.getBounds();
+        long rows = bounds == null ? 1 : bounds[2] + 1, columns = bounds == null ? 1 : bounds[3] + 1;
+        setDimension((int) Math.max(1, Math.min(rows, VIEWPORT)), (int) Math.max(1, Math.min(columns, VIEWPORT)));
+        clear();
+        loadRule(macrocell.getRule() == null ? Rule.CONWAY.toString() : macrocell.getRule());
+        if (engine instanceof HashLifeEngine) ((HashLifeEngine) engine).load(macrocell);
+        else macrocell.cells(0, 0, getRows(), getColumns(), new PatternReader.Handler() {
+            @Override
+            public void cells(int[] coordinates, int length) {
+                engine.setAlive(coordinates, length);
+            }
+        });
+        changed();
+    }
+
+    /**
+     * saves the universe as a run length encoded pattern; see Rle.
+     */
+    public void saveRle(File file) throws IOException {
+        Rle.write(this, file);
+    }
+
+    /**
+     * saves the universe as a macrocell. The quadtree of the HashLife engine is written as it
+     * is; the universes of other engines are turned into one first.
+     *
+     * @throws IOException if the file can't be written, the rule has dying cells or the
+     *                     universe has grown too large for a macrocell
+     */
+    public void saveMacrocell(File file) throws IOException {
+        if (rule.getStates() > 2)
+            throw new IOException("macrocells can't hold the dying cells of " + rule);
+        HashLifeEngine quadtree;
+        if (engine instanceof HashLifeEngine) quadtree = (HashLifeEngine) engine;
+        else {
+            quadtree = new HashLifeEngine(1, 1);
+            quadtree.load(engine);
+        }
+        Macrocell macrocell;
+        try {
+            macrocell = quadtree.toMacrocell();
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        macrocell.setRule(rule.toString());
+        macrocell.write(file);
+    }
+
+    /**
+     * carries on counting from the generation at which a checkpoint was taken.
+     */
+    void resume(long generation) {
+        skippedGenerations = generation - engine.getGeneration();
+        changed();
+    }
+}
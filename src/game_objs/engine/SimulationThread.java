@@ -0,0 +1,236 @@
+package game_objs.engine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs a simulation on a thread of its own, so that its pace is independent of the rate at
+ * which it is drawn. Nothing but this thread ever touches the simulation:
+ * <ul>
+ * <li>changes, such as cells toggled on screen, are submitted as commands to a queue that
+ * the thread drains before every generation</li>
+ * <li>the state is published as an immutable Snapshot, which the drawing thread picks up
+ * with poll(). A new snapshot is only taken once the previous one has been picked up, so
+ * that no time is spent on copies that are never drawn, and a slow frame never holds back
+ * the simulation. Each snapshot only copies what has changed since the previous one, and
+ * the statistics only while someone looks at them.</li>
+ * </ul>
+ * Neither side ever waits for a lock held by the other.
+ * <p>
+ * In turbo mode every step computes several generations at once, and only the last of
+ * them is ever drawn. Engines such as HashLife skip the generations in between altogether.
+ */
+public class SimulationThread extends Thread {
+    private final Simulation simulation;
+    private final ConcurrentLinkedQueue<Consumer<Simulation>> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicLong commandsSubmitted = new AtomicLong();
+    private final AtomicReference<Snapshot> published = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+    private long commandsApplied;
+    //incremented whenever the simulation changes; compared against the last published version.
+    private long version;
+    private long publishedVersion = -1;
+    private Snapshot lastPublished;
+    private volatile boolean running;
+    private volatile long nanosPerStep;
+    private volatile int generationsPerStep = 1;
+    private volatile boolean stoppingOnCycle;
+    private volatile boolean takingStatistics = true;
+    private volatile double generationsPerSecond;
+    //the generations computed since the rate was last measured, and when that was.
+    private long rateGenerations;
+    private long rateSince;
+    private volatile boolean stopped;
+
+    public SimulationThread(Simulation simulation) {
+        super("simulation");
+        this.simulation = simulation;
+        setDaemon(true);
+    }
+
+    /**
+     * queues a change to be applied to the simulation on its own thread, before the next
+     * generation is computed.
+     *
+     * @param command receives the simulation
+     */
+    public void submit(Consumer<Simulation> command) {
+        commandsSubmitted.incrementAndGet();
+        commands.add(command);
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * @return the number of commands submitted so far. Snapshots taken before all of them
+     * were applied still show what was on screen before the changes.
+     */
+    public long getCommandsSubmitted() {
+        return commandsSubmitted.get();
+    }
+
+    /**
+     * @return the snapshot taken since the last call, or null if nothing has changed. It is
+     * taken right after the call if the simulation has changed in the meantime, so it may
+     * lag behind by a generation or so.
+     */
+    public Snapshot poll() {
+        Snapshot snapshot = published.getAndSet(null);
+        if (snapshot != null) LockSupport.unpark(this);
+        return snapshot;
+    }
+
+    /**
+     * @return the message of a command that has failed, such as a rule that the engine
+     * can't run, or null if none has failed since the last call. A failed command leaves
+     * the simulation as it was.
+     */
+    public String pollError() {
+        return errors.poll();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param running whether generations are computed continuously, or only on command
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * @param millis the least number of milliseconds between two generations; 0 computes
+     *               them as fast as possible
+     */
+    public void setMillisPerStep(int millis) {
+        nanosPerStep = millis * 1000000L;
+        LockSupport.unpark(this);
+    }
+
+    public int getGenerationsPerStep() {
+        return generationsPerStep;
+    }
+
+    /**
+     * @param generations the number of generations computed by every step; more than one
+     *                    turns on turbo mode
+     * @throws IllegalArgumentException if generations is less than 1
+     */
+    public void setGenerationsPerStep(int generations) {
+        if (generations < 1)
+            throw new IllegalArgumentException("generations per step must be positive: " + generations);
+        generationsPerStep = generations;
+    }
+
+    public boolean isStoppingOnCycle() {
+        return stoppingOnCycle;
+    }
+
+    /**
+     * @param stoppingOnCycle whether to pause once the simulation has found a still life or
+     *                        an oscillator, rather than to keep running and skip whole periods;
+     *                        see Simulation.setCycleDetection()
+     */
+    public void setStoppingOnCycle(boolean stoppingOnCycle) {
+        this.stoppingOnCycle = stoppingOnCycle;
+    }
+
+    public boolean isTakingStatistics() {
+        return takingStatistics;
+    }
+
+    /**
+     * @param takingStatistics whether snapshots carry the statistics of the simulation. The
+     *                         sharded engine collects them from all of its workers, so they
+     *                         are best left out while they aren't shown.
+     */
+    public void setTakingStatistics(boolean takingStatistics) {
+        boolean taken = this.takingStatistics;
+        this.takingStatistics = takingStatistics;
+        //a command that does nothing has a snapshot with statistics taken even while paused.
+        if (takingStatistics && !taken) submit(simulation -> {});
+    }
+
+    /**
+     * @return the number of generations computed per second, measured over the last half
+     * second or so; 0 while paused
+     */
+    public double getGenerationsPerSecond() {
+        return generationsPerSecond;
+    }
+
+    /**
+     * stops the thread after the generation being computed.
+     */
+    public void shutdown() {
+        stopped = true;
+        LockSupport.unpark(this);
+    }
+
+    @Override
+    public void run() {
+        long nextStep = System.nanoTime();
+        while (!stopped) {
+            applyCommands();
+            long now = System.nanoTime();
+            if (running && now - nextStep >= 0) {
+                int generations = generationsPerStep;
+                simulation.step(generations);
+                version++;
+                nextStep = now + nanosPerStep;
+                measureRate(generations);
+                if (stoppingOnCycle && simulation.getPeriod() > 0) running = false;
+            }
+            publish();
+
+            if (!commands.isEmpty()) continue;
+            if (!running) {
+                generationsPerSecond = 0;
+                rateGenerations = 0;
+                rateSince = 0;
+                LockSupport.park(this);
+            }
+            else if (nextStep - System.nanoTime() > 0)
+                LockSupport.parkNanos(this, nextStep - System.nanoTime());
+        }
+    }
+
+    private void measureRate(int generations) {
+        long now = System.nanoTime();
+        if (rateSince == 0) rateSince = now;
+        rateGenerations += generations;
+        if (now - rateSince >= 500000000L) {
+            generationsPerSecond = rateGenerations * 1e9 / (now - rateSince);
+            rateGenerations = 0;
+            rateSince = now;
+        }
+    }
+
+    private void applyCommands() {
+        Consumer<Simulation> command;
+        while ((command = commands.poll()) != null) {
+            try {
+                command.accept(simulation);
+            } catch (RuntimeException e) {
+                errors.add(String.valueOf(e.getMessage()));
+            }
+            commandsApplied++;
+            version++;
+        }
+    }
+
+    /**
+     * takes a snapshot if something has changed and the previous one has been picked up.
+     */
+    private void publish() {
+        if (version == publishedVersion || published.get() != null) return;
+        lastPublished = new Snapshot(simulation, lastPublished, commandsApplied, generationsPerSecond, takingStatistics);
+        published.set(lastPublished);
+        publishedVersion = version;
+    }
+}
@@ -0,0 +1,137 @@
+package game_objs.engine;
+
+/**
+ * An immutable copy of a simulation at one generation, handed from the simulation thread
+ * to whoever draws it. Besides the state of every cell it carries the engine, the rule and
+ * the topology, so that the controls can be kept up to date without touching the simulation.
+ * <p>
+ * The cells are copied tile by tile, in the tiles of TileTracker. Only the tiles that the
+ * engine reports as changed since the previous snapshot are read from the simulation; all
+ * others are shared with the previous snapshot, which never changes either. The sharded
+ * engine thus only fetches the strips that have changed.
+ */
+public class Snapshot {
+    private final int rows;
+    private final int columns;
+    private final int tileColumns;
+    //the states of the cells of every tile, row by row; see getState().
+    private final byte[][] tiles;
+    private final long generation;
+    private final long commandsApplied;
+    private final double generationsPerSecond;
+    private final long period;
+    private final Statistics statistics;
+    private final Rule rule;
+    private final String engineName;
+    private final Neighbourhood neighbourhood;
+    private final Boundary boundary;
+
+    /**
+     * @param previous             the snapshot taken before, whose unchanged tiles are
+     *                             shared, or null
+     * @param commandsApplied      the number of commands the simulation has received so far
+     * @param generationsPerSecond the rate at which generations were being computed
+     * @param statistics           whether to take the statistics, which may be expensive;
+     *                             see getStatistics()
+     */
+    Snapshot(Simulation simulation, Snapshot previous, long commandsApplied, double generationsPerSecond,
+             boolean statistics) {
+        rows = simulation.getRows();
+        columns = simulation.getColumns();
+        tileColumns = (columns + TileTracker.TILE_SIZE - 1) >> TileTracker.TILE_SHIFT;
+        int tileRows = (rows + TileTracker.TILE_SIZE - 1) >> TileTracker.TILE_SHIFT;
+        tiles = new byte[tileRows * tileColumns][];
+        boolean[] changed = new boolean[tiles.length];
+        simulation.collectChanged(changed);
+        boolean sharing = previous != null && previous.rows == rows && previous.columns == columns;
+        for (int tile = 0; tile < tiles.length; tile++)
+            tiles[tile] = sharing && !changed[tile] ? previous.tiles[tile] : copy(simulation, tile);
+        generation = simulation.getGeneration();
+        period = simulation.getPeriod();
+        this.statistics = statistics ? simulation.getStatistics() : null;
+        this.commandsApplied = commandsApplied;
+        this.generationsPerSecond = generationsPerSecond;
+        rule = simulation.getRule();
+        engineName = simulation.getEngineName();
+        neighbourhood = simulation.getNeighbourhood();
+        boundary = simulation.getBoundary();
+    }
+
+    private byte[] copy(Simulation simulation, int tile) {
+        int top = tile / tileColumns << TileTracker.TILE_SHIFT;
+        int left = tile % tileColumns << TileTracker.TILE_SHIFT;
+        byte[] states = new byte[TileTracker.TILE_SIZE * TileTracker.TILE_SIZE];
+        for (int r = top; r < Math.min(top + TileTracker.TILE_SIZE, rows); r++)
+            for (int c = left; c < Math.min(left + TileTracker.TILE_SIZE, columns); c++)
+                states[(r - top) << TileTracker.TILE_SHIFT | c - left] = (byte) simulation.getState(r, c);
+        return states;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return 0 for dead, 1 for alive and 2 or more for the dying cells of Generations rules
+     */
+    public int getState(int row, int col) {
+        byte[] tile = tiles[(row >> TileTracker.TILE_SHIFT) * tileColumns + (col >> TileTracker.TILE_SHIFT)];
+        return tile[(row & TileTracker.TILE_SIZE - 1) << TileTracker.TILE_SHIFT | col & TileTracker.TILE_SIZE - 1] & 0xFF;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the number of commands that had been applied to the simulation when the
+     * snapshot was taken; see SimulationThread.submit()
+     */
+    public long getCommandsApplied() {
+        return commandsApplied;
+    }
+
+    /**
+     * @return the number of generations computed per second when the snapshot was taken;
+     * 0 while paused
+     */
+    public double getGenerationsPerSecond() {
+        return generationsPerSecond;
+    }
+
+    /**
+     * @return the period of the cycle the universe has entered, 1 for a still life and 0 if
+     * none was found; see Simulation.getPeriod()
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return the statistics of the generation, or null if they weren't asked for; see
+     * SimulationThread.setTakingStatistics()
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    public Neighbourhood getNeighbourhood() {
+        return neighbourhood;
+    }
+
+    public Boundary getBoundary() {
+        return boundary;
+    }
+}
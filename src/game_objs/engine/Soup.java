@@ -0,0 +1,110 @@
+package game_objs.engine;
+
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Fills a universe with random cells. The universe is divided into tiles of 64 x 64
+ * cells, each with a random stream of its own that is derived from the seed and the
+ * position of the tile alone, so that a seed always yields the same soup no matter how
+ * many workers generate it. The tiles of a band of 64 rows are generated in parallel and
+ * then applied to the engine a word at a time; see Engine.flip(). HashLife receives the
+ * whole soup at once instead, as a quadtree built from a bit-packed copy of it.
+ * <p>
+ * A word in which every bit is set with probability p is formed from random words by the
+ * binary digits of p: starting from the least significant digit, a 1 ors in a random
+ * word and a 0 ands one in, which halves and then adds a half or halves the probability
+ * of a bit being set. 16 digits are used.
+ */
+final class Soup {
+    private static final int DIGITS = 16;
+
+    private final Engine engine;
+    private final long seed;
+    private final int threshold;
+    private final int words;
+    //the words of the band being generated, for every row of it.
+    private final long[][] band = new long[64][];
+    private int bandIndex;
+    private int slices;
+    private final IntConsumer generateSlice;
+
+    private Soup(Engine engine, double density, long seed) {
+        this.engine = engine;
+        this.seed = seed;
+        threshold = (int) Math.round(density * (1 << DIGITS));
+        words = BitPackedEngine.wordsPerRow(engine.getColumns());
+        for (int r = 0; r < band.length; r++)
+            band[r] = new long[words];
+        generateSlice = slice -> generate(words * slice / slices, words * (slice + 1) / slices);
+    }
+
+    /**
+     * flips the cells of a universe at random; a cell that is flipped comes alive if it
+     * was dead and dies if it was alive.
+     *
+     * @param density    the probability of a cell being flipped, between 0 and 1
+     * @param seed       determines the soup
+     * @param workerPool the pool among whose workers the tiles of a band are divided, or null
+     */
+    static void flip(Engine engine, double density, long seed, WorkerPool workerPool) {
+        if (density < 0 || density > 1)
+            throw new IllegalArgumentException("the density must lie between 0 and 1: " + density);
+        if (engine instanceof HashLifeEngine) {
+            //setting the cells of a quadtree one by one would rebuild its path to the root for each.
+            BitPackedEngine buffer = new BitPackedEngine(engine.getRows(), engine.getColumns());
+            flip(buffer, density, seed, workerPool);
+            ((HashLifeEngine) engine).flip(buffer);
+            return;
+        }
+        Soup soup = new Soup(engine, density, seed);
+        if (soup.threshold == 0) return;
+        int bands = (engine.getRows() + 63) >>> 6;
+        for (soup.bandIndex = 0; soup.bandIndex < bands; soup.bandIndex++) {
+            soup.slices = workerPool == null || soup.words < 16 ? 1 : Math.min(workerPool.getParallelism(), soup.words);
+            if (soup.slices == 1) soup.generate(0, soup.words);
+            else workerPool.run(soup.slices, soup.generateSlice);
+            soup.apply();
+        }
+    }
+
+    /**
+     * generates the tiles of the current band from the given tile column to the other.
+     */
+    private void generate(int fromTile, int toTile) {
+        int lastBits = engine.getColumns() & 63;
+        for (int t = fromTile; t < toTile; t++) {
+            SplittableRandom random = new SplittableRandom(mix((long) bandIndex << 32 | t) ^ seed);
+            long mask = t == words - 1 && lastBits != 0 ? -1L >>> (64 - lastBits) : -1L;
+            for (long[] row : band)
+                row[t] = word(random) & mask;
+        }
+    }
+
+    /**
+     * @return a word in which every bit is set with the probability threshold / 2^DIGITS
+     */
+    private long word(SplittableRandom random) {
+        if (threshold == 1 << DIGITS) return -1L;
+        int digits = threshold, skipped = Integer.numberOfTrailingZeros(digits);
+        long word = 0;
+        for (int i = skipped; i < DIGITS; i++)
+            word = (digits >>> i & 1) != 0 ? word | random.nextLong() : word & random.nextLong();
+        return word;
+    }
+
+    private void apply() {
+        int first = bandIndex << 6, end = Math.min(first + 64, engine.getRows());
+        for (int r = first; r < end; r++) {
+            long[] row = band[r - first];
+            for (int w = 0; w < words; w++)
+                if (row[w] != 0) engine.flip(r, w << 6, row[w]);
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+}
@@ -0,0 +1,196 @@
+package game_objs.engine;
+
+/**
+ * Keeps track of the living cells only, so that both memory and time scale with the
+ * population rather than with the dimension of the grid. The row and column of a cell
+ * are packed into a single long which is stored in a primitive hash set.
+ * <p>
+ * The universe is an unbounded plane; the rows and columns of the engine merely describe
+ * the window onto the plane exposed through isAlive(), with row 0 and column 0 at the origin.
+ * The population, the hash and the statistics cover the entire plane, as those of HashLife
+ * do, since cells that have left the window may still come back.
+ */
+public class SparseEngine implements Engine {
+    private static final int ALIVE = 16; //added onto the neighbour count of a living cell
+
+    private LongHashSet living;
+    private LongHashSet nextLiving;
+    private LongIntHashMap counts;
+    private int rows;
+    private int columns;
+    private long generation;
+    private long hash;
+    //the cells born and died in the last step, or -1 if cells were set since.
+    private long births = -1;
+    private long deaths = -1;
+    private Rule rule = Rule.CONWAY;
+
+    public SparseEngine(int rows, int columns) {
+        living = new LongHashSet();
+        nextLiving = new LongHashSet();
+        counts = new LongIntHashMap();
+        setDimension(rows, columns);
+    }
+
+    static long pack(int row, int col) {
+        return (long) row << 32 | col & 0xFFFFFFFFL;
+    }
+
+    static int unpackRow(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int unpackCol(long key) {
+        return (int) key;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public void setDimension(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        generation = 0;
+        clear();
+    }
+
+    @Override
+    public boolean isAlive(int row, int col) {
+        return living.contains(pack(row, col));
+    }
+
+    @Override
+    public void setAlive(int row, int col, boolean alive) {
+        if (alive ? living.add(pack(row, col)) : living.remove(pack(row, col))) {
+            hash ^= Zobrist.key(row, col);
+            births = deaths = -1;
+        }
+    }
+
+    /**
+     * every living cell adds one onto the count of each of its neighbours; the cells
+     * that end up with the right count make up the next generation.
+     */
+    @Override
+    public void step() {
+        counts.clear();
+        for (long key : living.table())
+            if (key != LongHashSet.EMPTY) count(key);
+        //the key that marks empty slots is a cell as well; see LongHashSet.
+        if (living.contains(LongHashSet.EMPTY)) count(LongHashSet.EMPTY);
+
+        nextLiving.clear();
+        births = deaths = 0;
+        long[] keys = counts.keyTable();
+        int[] values = counts.valueTable();
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != LongHashSet.EMPTY) decide(keys[i], values[i]);
+        if (counts.containsEmpty()) decide(LongHashSet.EMPTY, counts.getEmptyValue());
+
+        LongHashSet temp = living;
+        living = nextLiving;
+        nextLiving = temp;
+        generation++;
+    }
+
+    private void count(long key) {
+        int row = unpackRow(key), col = unpackCol(key);
+        counts.add(key, ALIVE);
+        for (int i = -1; i <= 1; i++)
+            for (int q = -1; q <= 1; q++)
+                if (i != 0 || q != 0)
+                    counts.add(pack(row + i, col + q), 1);
+    }
+
+    /**
+     * @param value the number of living neighbours, plus ALIVE if the cell is alive
+     */
+    private void decide(long key, int value) {
+        boolean alive = value >= ALIVE;
+        boolean result = rule.next(alive, value & ALIVE - 1);
+        if (result) nextLiving.add(key);
+        if (result != alive) {
+            hash ^= Zobrist.key(unpackRow(key), unpackCol(key));
+            if (result) births++;
+            else deaths++;
+        }
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the number of living cells on the entire plane.
+     */
+    @Override
+    public long getPopulation() {
+        return living.size();
+    }
+
+    /**
+     * @return the hash of the entire plane, which is kept up to date as cells are born and die
+     */
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the statistics of the entire plane; the bounding box may extend beyond the
+     * window, to negative rows and columns as well
+     */
+    @Override
+    public Statistics getStatistics() {
+        int top = Integer.MAX_VALUE, left = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE, right = Integer.MIN_VALUE;
+        for (long key : living.table())
+            if (key != LongHashSet.EMPTY) {
+                top = Math.min(top, unpackRow(key));
+                bottom = Math.max(bottom, unpackRow(key));
+                left = Math.min(left, unpackCol(key));
+                right = Math.max(right, unpackCol(key));
+            }
+        if (living.contains(LongHashSet.EMPTY)) {
+            top = Math.min(top, unpackRow(LongHashSet.EMPTY));
+            bottom = Math.max(bottom, unpackRow(LongHashSet.EMPTY));
+            left = Math.min(left, unpackCol(LongHashSet.EMPTY));
+            right = Math.max(right, unpackCol(LongHashSet.EMPTY));
+        }
+        if (living.size() == 0) top = left = bottom = right = -1;
+        return new Statistics(living.size(), births, deaths, top, left, bottom, right, -1);
+    }
+
+    @Override
+    public void clear() {
+        living.clear();
+        hash = 0;
+        births = deaths = -1;
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule gives birth to cells without neighbours
+     *                                  or isn't life-like
+     */
+    @Override
+    public void setRule(Rule rule) {
+        if (!rule.isLifeLike())
+            throw new IllegalArgumentException("the sparse engine can only run life-like rules: " + rule);
+        if (rule.isBirthFromNothing())
+            throw new IllegalArgumentException("the sparse engine can't run B0 rules: " + rule);
+        this.rule = rule;
+    }
+}
@@ -0,0 +1,107 @@
+package game_objs.engine;
+
+/**
+ * Figures about a generation of a universe, as gathered by Engine.getStatistics().
+ */
+public class Statistics {
+    private final long population;
+    private final long births;
+    private final long deaths;
+    private final int top;
+    private final int left;
+    private final int bottom;
+    private final int right;
+    private final int activeTiles;
+
+    /**
+     * @param births      the cells born in the last step, or -1 if unknown
+     * @param deaths      the cells that died in the last step, or -1 if unknown
+     * @param top         the first row holding a living cell, or -1 if there is none;
+     *                    engines on an unbounded plane may report negative rows and
+     *                    columns as well
+     * @param left        the first column holding a living cell, or -1 if there is none
+     * @param bottom      the last row holding a living cell, or -1 if there is none
+     * @param right       the last column holding a living cell, or -1 if there is none
+     * @param activeTiles the tiles computed by the last step, or -1 if the engine doesn't
+     *                    skip quiet tiles
+     */
+    public Statistics(long population, long births, long deaths,
+                      int top, int left, int bottom, int right, int activeTiles) {
+        this.population = population;
+        this.births = births;
+        this.deaths = deaths;
+        this.top = top;
+        this.left = left;
+        this.bottom = bottom;
+        this.right = right;
+        this.activeTiles = activeTiles;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    /**
+     * @return the number of cells born in the last step, or -1 if the engine doesn't know
+     */
+    public long getBirths() {
+        return births;
+    }
+
+    /**
+     * @return the number of cells that died in the last step, or -1 if the engine doesn't know
+     */
+    public long getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * @return the first row holding a living cell, or -1 if there is none
+     */
+    public int getTop() {
+        return top;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    /**
+     * @return the height of the bounding box of the living cells; 0 if there are none
+     */
+    public int getHeight() {
+        return population == 0 ? 0 : bottom - top + 1;
+    }
+
+    /**
+     * @return the width of the bounding box of the living cells; 0 if there are none
+     */
+    public int getWidth() {
+        return population == 0 ? 0 : right - left + 1;
+    }
+
+    /**
+     * @return the number of tiles computed by the last step, or -1 if the engine computes
+     * all of them
+     */
+    public int getActiveTiles() {
+        return activeTiles;
+    }
+
+    @Override
+    public String toString() {
+        String s = "pop " + population;
+        if (births >= 0) s += ", +" + births + " -" + deaths;
+        s += ", box " + getWidth() + "x" + getHeight();
+        if (activeTiles >= 0) s += ", tiles " + activeTiles;
+        return s;
+    }
+}
@@ -0,0 +1,182 @@
+package game_objs.engine;
+
+import java.util.Arrays;
+
+/**
+ * Divides the grid into square tiles and keeps track of which of them need to be
+ * computed in the upcoming generation. A tile is active if one of its cells, or a cell
+ * of one of the surrounding tiles, has changed since it was last computed; all other tiles
+ * are quiet and can be skipped as a whole. Every change is recorded in constant time.
+ * <p>
+ * The tiles wrap around at the edges of the grid in the same way as the cells do on a torus,
+ * which covers every other boundary as well, except that the rows of a Klein bottle come
+ * back mirrored; see setTwisted().
+ * <p>
+ * Apart from that, the tracker remembers which tiles have changed since they were last
+ * collected by collectChanged(), so that a Snapshot only copies those.
+ */
+public class TileTracker {
+    public static final int TILE_SHIFT = 5;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+    private int rows;
+    private int columns;
+    private int tileRows;
+    private int tileColumns;
+    private boolean[] active;
+    private boolean[] next;
+    private int[] activeTiles;
+    private int numActive;
+    private boolean[] changed;
+    private boolean twisted;
+
+    public TileTracker(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        tileRows = (rows + TILE_SIZE - 1) >> TILE_SHIFT;
+        tileColumns = (columns + TILE_SIZE - 1) >> TILE_SHIFT;
+        active = new boolean[tileRows * tileColumns];
+        next = new boolean[tileRows * tileColumns];
+        activeTiles = new int[tileRows * tileColumns];
+        changed = new boolean[tileRows * tileColumns];
+    }
+
+    /**
+     * @param twisted whether rows that wrap around the top and bottom edges come back with
+     *                their columns in reverse order, as on a Klein bottle
+     */
+    public void setTwisted(boolean twisted) {
+        this.twisted = twisted;
+    }
+
+    /**
+     * marks a tile and the eight tiles surrounding it.
+     */
+    private void markNeighbourhood(boolean[] flags, int tileRow, int tileCol) {
+        for (int i = -1; i <= 1; i++) {
+            int r = tileRow + i;
+            boolean wrapped = r < 0 || r >= tileRows;
+            r = r < 0 ? r + tileRows : r >= tileRows ? r - tileRows : r;
+            for (int q = -1; q <= 1; q++) {
+                int c = tileCol + q;
+                c = c < 0 ? c + tileColumns : c >= tileColumns ? c - tileColumns : c;
+                if (wrapped && twisted) markMirrored(flags, r, c);
+                else flags[r * tileColumns + c] = true;
+            }
+        }
+    }
+
+    /**
+     * marks the tiles of the row that hold the columns of the given tile in reverse order.
+     */
+    private void markMirrored(boolean[] flags, int tileRow, int tileCol) {
+        int first = tileCol << TILE_SHIFT;
+        int end = Math.min(first + TILE_SIZE, columns);
+        for (int c = (columns - end) >> TILE_SHIFT; c <= (columns - 1 - first) >> TILE_SHIFT; c++)
+            flags[tileRow * tileColumns + c] = true;
+    }
+
+    /**
+     * records that a cell has been modified outside of an iteration, so that the cells
+     * around it are computed in the upcoming generation.
+     */
+    public void markActive(int row, int col) {
+        markNeighbourhood(active, row >> TILE_SHIFT, col >> TILE_SHIFT);
+        changed[(row >> TILE_SHIFT) * tileColumns + (col >> TILE_SHIFT)] = true;
+    }
+
+    /**
+     * records that a tile has changed while being computed, so that the tile and the
+     * tiles around it are computed in the following generation. Safe to be invoked
+     * concurrently by the workers.
+     */
+    public void markChanged(int tile) {
+        markNeighbourhood(next, tile / tileColumns, tile % tileColumns);
+        changed[tile] = true;
+    }
+
+    /**
+     * activates every tile, and counts all of them as changed.
+     */
+    public void activateAll() {
+        Arrays.fill(active, true);
+        Arrays.fill(changed, true);
+    }
+
+    /**
+     * sets the flags of the tiles that have changed since the last invocation.
+     *
+     * @param flags one flag per tile, row by row; flags that are set already stay set
+     */
+    public void collectChanged(boolean[] flags) {
+        for (int i = 0; i < changed.length; i++)
+            if (changed[i]) {
+                flags[i] = true;
+                changed[i] = false;
+            }
+    }
+
+    /**
+     * gathers the active tiles so that they can be divided among the workers.
+     *
+     * @return the number of active tiles
+     */
+    public int collect() {
+        numActive = 0;
+        for (int i = 0; i < active.length; i++)
+            if (active[i]) activeTiles[numActive++] = i;
+        return numActive;
+    }
+
+    /**
+     * @param index index in [0, collect())
+     * @return the index of the tile
+     */
+    public int getActiveTile(int index) {
+        return activeTiles[index];
+    }
+
+    /**
+     * @return the number of tiles gathered by the last invocation of collect()
+     */
+    public int getNumActive() {
+        return numActive;
+    }
+
+    public int getNumTiles() {
+        return active.length;
+    }
+
+    /**
+     * moves on to the next generation, in which the tiles that changed in the
+     * current one, along with their neighbours, are active.
+     */
+    public void advance() {
+        boolean[] temp = active;
+        active = next;
+        next = temp;
+        Arrays.fill(next, false);
+    }
+
+    public int firstRow(int tile) {
+        return tile / tileColumns << TILE_SHIFT;
+    }
+
+    /**
+     * @return the row after the last row of the tile
+     */
+    public int endRow(int tile) {
+        return Math.min(firstRow(tile) + TILE_SIZE, rows);
+    }
+
+    public int firstCol(int tile) {
+        return tile % tileColumns << TILE_SHIFT;
+    }
+
+    /**
+     * @return the column after the last column of the tile
+     */
+    public int endCol(int tile) {
+        return Math.min(firstCol(tile) + TILE_SIZE, columns);
+    }
+}
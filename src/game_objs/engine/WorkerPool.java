@@ -0,0 +1,79 @@
+package game_objs.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * A long-lived pool of worker threads shared by the engines. Work is divided into
+ * slices that are handed to the workers; the calling thread blocks until every slice
+ * has been completed instead of spinning.
+ * <p>
+ * The tree of tasks that divides the slices among the workers is built once and
+ * reinitialized for every run, so that running the pool doesn't allocate.
+ */
+public class WorkerPool {
+    private ForkJoinPool pool;
+    private IntConsumer task;
+    private Slices root;
+
+    /**
+     * @param parallelism number of worker threads, usually the number of available processors
+     */
+    public WorkerPool(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * invokes the task once for every slice in [0, slices) and waits until all of them are done.
+     *
+     * @param slices number of slices
+     * @param task   receives the index of the slice to be processed
+     */
+    public synchronized void run(int slices, IntConsumer task) {
+        if (slices == 1) {
+            task.accept(0);
+        } else if (slices > 1) {
+            if (root == null || root.to != slices)
+                root = new Slices(0, slices);
+            else root.reset();
+            this.task = task;
+            pool.invoke(root);
+            this.task = null;
+        }
+    }
+
+    /**
+     * splits the range of slices in halves until a single slice is left.
+     */
+    private class Slices extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+        private final Slices left, right;
+
+        private Slices(int from, int to) {
+            this.from = from;
+            this.to = to;
+            int middle = (from + to) >>> 1;
+            left = to - from == 1 ? null : new Slices(from, middle);
+            right = to - from == 1 ? null : new Slices(middle, to);
+        }
+
+        private void reset() {
+            reinitialize();
+            if (left == null) return;
+            left.reset();
+            right.reset();
+        }
+
+        @Override
+        protected void compute() {
+            if (left == null) task.accept(from);
+            else invokeAll(left, right);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package game_objs.engine;
+
+/**
+ * Zobrist keys for the cells of a universe: the hash of a universe is the exclusive or of
+ * the keys of its living cells, so that a birth or a death updates it with a single xor.
+ * The keys are derived from the position of a cell by a 64-bit finalizer rather than drawn
+ * from a table, which would be as large as the universe.
+ */
+final class Zobrist {
+
+    private Zobrist() {
+    }
+
+    /**
+     * @return the key of a living cell
+     */
+    static long key(int row, int col) {
+        return key(row, col, 1);
+    }
+
+    /**
+     * @param state the state of the cell under a Generations rule, 1 or more
+     * @return the key of a cell in the given state
+     */
+    static long key(int row, int col, int state) {
+        long z = ((long) row << 32 | col & 0xFFFFFFFFL) + state * 0x9E3779B97F4A7C15L;
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+
+    /**
+     * @return the exclusive or of the keys of the set bits of a word of a bit-packed row
+     */
+    static long word(int row, int w, long bits) {
+        long hash = 0;
+        while (bits != 0) {
+            hash ^= key(row, w << 6 | Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+        }
+        return hash;
+    }
+}